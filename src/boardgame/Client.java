@@ -86,6 +86,8 @@ public class Client implements Runnable {
 
     /** Process message received from server. */
     protected void processMessage(String msg) {
+        player.stopPondering();
+
         if (msg.startsWith("GAMEOVER")) {
             String[] tokens = msg.split(" ");
             String winner = tokens[tokens.length - 1];
@@ -100,6 +102,7 @@ public class Client implements Runnable {
             player.gameOver(msg, bs);
             this.gameOver = true;
         } else if (msg.startsWith("PLAY")) { // My turn
+            player.getTimeManager().moveRequested();
             playMove();
         } else {
             // Expect a move
@@ -119,7 +122,18 @@ public class Client implements Runnable {
                 return;
             }
 
+            if (m.getPlayerID() == playerID) {
+                player.getTimeManager().moveEchoed();
+            }
             player.movePlayed(board.getBoardState(), m);
+            ponderIfOpponentTurn();
+        }
+    }
+
+    /** Let the player think in the background while the opponent is on move. */
+    protected void ponderIfOpponentTurn() {
+        if (board.getWinner() == Board.NOBODY && board.getTurnPlayer() != playerID) {
+            player.startPondering(board.getBoardState());
         }
     }
 
@@ -148,6 +162,7 @@ public class Client implements Runnable {
         try {
             String msg = myMove.toTransportable();
             sockOut.println(msg);
+            player.getTimeManager().moveSent();
 
             if (DBGNET)
                 System.err.println(player.getColor() + "< " + msg);
@@ -186,7 +201,9 @@ public class Client implements Runnable {
             String clr = str.substring(0, str.indexOf(' '));
             playerID = board.getIDForName(clr);
             player.setColor(playerID);
+            player.getTimeManager().readStartMessage(msg);
             player.gameStarted(msg);
+            ponderIfOpponentTurn();
 
             return true;
         } catch (Exception e) {
@@ -214,6 +231,7 @@ public class Client implements Runnable {
             e.printStackTrace();
             player.gameOver("CONNECTION ERROR " + e, board.getBoardState());
         } finally {
+            player.stopPondering();
             try {
                 socket.close();
             } catch (Exception e) {
@@ -0,0 +1,114 @@
+package boardgame;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Cheap end-of-search test for loops that run many short iterations.
+ *
+ * Reading the clock on every iteration costs more than it seems once iterations get down to
+ * a few microseconds, so expired() only reads System.nanoTime() every so many calls. That
+ * number is tuned from the time the last calls took, so that the clock is read about once
+ * every CHECK_PERIOD_NANOS whatever an iteration costs, and never later than the deadline.
+ * The deadline is then missed by at most a check period plus one iteration.
+ *
+ * With startTimer() a shared daemon thread sets the expired flag at the deadline instead,
+ * and expired() is a single volatile read.
+ *
+ * A Deadline counts the calls of one thread; give each searching thread its own. stop() may
+ * be called from any thread.
+ */
+public class Deadline {
+    // Aim for one clock read per millisecond
+    private static final long CHECK_PERIOD_NANOS = 1_000_000;
+    private static final int MAX_CHECK_INTERVAL = 1 << 16;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private static Timer timer;
+
+    private final long endNanos;
+    private final boolean endless;
+    private volatile boolean expired;
+    private boolean timed;
+
+    // Calls between clock reads, calls left until the next one, and when the last one was
+    private int checkInterval = 1;
+    private int countdown = 1;
+    private long lastCheckNanos = -1;
+
+    private Deadline(long remainingMillis) {
+        endless = remainingMillis > Long.MAX_VALUE / NANOS_PER_MILLI / 2;
+        endNanos = endless ? 0 : System.nanoTime() + remainingMillis * NANOS_PER_MILLI;
+        expired = remainingMillis <= 0;
+    }
+
+    /**
+     * @param endTime the deadline as a System.currentTimeMillis() time, Long.MAX_VALUE for none
+     */
+    public static Deadline at(long endTime) {
+        return new Deadline(endTime == Long.MAX_VALUE ? Long.MAX_VALUE : endTime - System.currentTimeMillis());
+    }
+
+    /** Deadline the given number of milliseconds from now. */
+    public static Deadline in(long millis) {
+        return new Deadline(millis);
+    }
+
+    /**
+     * Hands the deadline over to the timer thread: expired() stops reading the clock.
+     * @return this deadline
+     */
+    public Deadline startTimer() {
+        if (endless || expired) return this;
+        timed = true;
+        long delay = Math.max(0, (endNanos - System.nanoTime()) / NANOS_PER_MILLI);
+        sharedTimer().schedule(new TimerTask() {
+            public void run() {
+                expired = true;
+            }
+        }, delay);
+        return this;
+    }
+
+    private static synchronized Timer sharedTimer() {
+        if (timer == null) {
+            timer = new Timer("deadline-timer", true);
+        }
+        return timer;
+    }
+
+    /** Makes expired() return true from now on. */
+    public void stop() {
+        expired = true;
+    }
+
+    /** Call once per iteration. */
+    public boolean expired() {
+        if (expired) return true;
+        if (endless || timed || --countdown > 0) return false;
+
+        long now = System.nanoTime();
+        long remaining = endNanos - now;
+        if (remaining <= 0) {
+            expired = true;
+            return true;
+        }
+        // The first call only starts the measurement. After that, time per call since the last
+        // read; the interval at most doubles, so a sudden slowdown is caught within a few reads
+        if (lastCheckNanos >= 0) {
+            long perCall = Math.max(1, (now - lastCheckNanos) / checkInterval);
+            long calls = Math.min(CHECK_PERIOD_NANOS, remaining) / perCall;
+            checkInterval = (int) Math.max(1, Math.min(Math.min(MAX_CHECK_INTERVAL, 2L * checkInterval), calls));
+        }
+        countdown = checkInterval;
+        lastCheckNanos = now;
+        return false;
+    }
+
+    /** Milliseconds left, reading the clock; Long.MAX_VALUE if there is no deadline. */
+    public long remainingMillis() {
+        if (endless) return Long.MAX_VALUE;
+        if (expired) return 0;
+        return Math.max(0, (endNanos - System.nanoTime()) / NANOS_PER_MILLI);
+    }
+}
@@ -22,11 +22,17 @@ import boardgame.BoardState;
  * method for any cleanup tasks. You may also override the movePlayed() method
  * to be notified whenever a move is received from the server.
  *
+ * Players that want to keep thinking while the opponent is on move can override
+ * startPondering() and stopPondering(). The client starts pondering whenever it
+ * is the opponent's turn and stops it before handling the next message from the
+ * server, so the board never changes while a pondering search is running.
+ *
  * See the BohnenspielRandomPlayer class for an example implementation.
  */
 public abstract class Player {
     private String name;
     protected int player_id;
+    private final TimeManager timeManager = new TimeManager();
 
     /**
      * Constructor: the name is used to identify the player to the server.
@@ -71,6 +77,27 @@ public abstract class Player {
      */
     abstract public Move chooseMove(BoardState board_state);
 
+    /**
+     * Called when it becomes the opponent's turn. Override this method to start a
+     * background search from the given position. It must return immediately.
+     *
+     * @param board_state
+     *            The current board state, with the opponent to move. The client
+     *            updates this object when the next move arrives, so copy it before
+     *            searching from it.
+     */
+    public void startPondering(BoardState board_state) {
+    }
+
+    /**
+     * Called before any message from the server is processed. Override this method
+     * to stop the search started in startPondering(); the background search must no
+     * longer be running when this method returns. Called even if pondering was
+     * never started.
+     */
+    public void stopPondering() {
+    }
+
     /**
      * Called when a GAMEOVER message is received from the server.
      *
@@ -105,4 +132,12 @@ public abstract class Player {
     final public String getName() {
         return name;
     }
+
+    /**
+     * Time budget for this player's moves, kept up to date by the client. Call
+     * getDeadline() on it at the start of chooseMove().
+     */
+    final public TimeManager getTimeManager() {
+        return timeManager;
+    }
 } // End class
\ No newline at end of file
@@ -374,7 +374,8 @@ public class Server implements Runnable {
                 for (int i = 0; i < board.getNumberOfPlayers(); i++) {
                     String msg = "START " + board.getNameForID(players[i].getPlayerID()) + " " + players[i].getName();
                     log(msg);
-                    players[i].send(msg);
+                    // Timeouts are only sent, log readers expect the name to end the line
+                    players[i].send(msg + " TIMEOUT " + timeout + " " + first_move_timeout);
                 }
 
                 // Game is started
@@ -0,0 +1,174 @@
+package boardgame;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Works out how long a player may think on each move.
+ *
+ * The server's timeouts are read from the START message (see Server), falling back to the
+ * values Autoplay runs the server with. A safety margin is kept below the timeout to cover
+ * what happens outside the search: garbage collection, the time the client takes to send the
+ * move, and the network. The margin starts small and grows to the largest delays observed in
+ * recent moves, then slowly shrinks back when they go away.
+ *
+ * The client reports the events it sees (moveRequested, moveSent, moveEchoed); players only
+ * call getDeadline at the start of chooseMove.
+ */
+public class TimeManager {
+    public static final long DEFAULT_MOVE_TIMEOUT = 2000;
+    public static final long DEFAULT_FIRST_MOVE_TIMEOUT = 30000;
+    private static final String TIMEOUT_TOKEN = "TIMEOUT";
+    private static final long MIN_MARGIN = 50;
+    // Observed delays decay by this factor each move, so a single slow move is forgotten
+    private static final double DECAY = 0.8;
+    // Normal quantile for the confidence bounds of clearlyBetter (99%)
+    private static final double CONFIDENCE_Z = 2.58;
+    // Fewer visits than this tell too little about a move
+    private static final long MIN_CONFIDENT_VISITS = 100;
+
+    private long moveTimeout = DEFAULT_MOVE_TIMEOUT;
+    private long firstMoveTimeout = DEFAULT_FIRST_MOVE_TIMEOUT;
+    private boolean firstMove = true;
+    private boolean clientDriven; // Whether a client reports the events below
+
+    // Time the current move was requested, and the deadline handed out for it
+    private long moveStart = -1;
+    private long deadline = -1;
+    private long gcTimeAtStart;
+    private long gcCountAtStart;
+    private long moveSentTime = -1;
+
+    // Recent worst cases, in milliseconds
+    private double overrun;
+    private double gcPause;
+    private double latency;
+
+    /**
+     * Reads the timeouts appended by the server to a START message:
+     * "START colour name TIMEOUT moveTimeout firstMoveTimeout". Messages without them leave
+     * the defaults in place.
+     */
+    public void readStartMessage(String msg) {
+        String[] tokens = msg.trim().split(" ");
+        for (int i = tokens.length - 3; i >= 0; i--) {
+            if (!tokens[i].equals(TIMEOUT_TOKEN)) continue;
+            try {
+                moveTimeout = Long.parseLong(tokens[i + 1]);
+                firstMoveTimeout = Long.parseLong(tokens[i + 2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring malformed timeouts in: " + msg);
+            }
+            return;
+        }
+    }
+
+    public long getMoveTimeout() { return moveTimeout; }
+
+    public long getFirstMoveTimeout() { return firstMoveTimeout; }
+
+    /** Current safety margin in milliseconds. */
+    public long getMargin() {
+        return MIN_MARGIN + (long) Math.ceil(overrun + gcPause + latency);
+    }
+
+    // ----- Events reported by the client ----- //
+
+    /** Called when the server asks for a move, so the clock starts when the server's does. */
+    public synchronized void moveRequested() {
+        clientDriven = true;
+        moveStart = System.currentTimeMillis();
+        gcTimeAtStart = totalGcTime();
+        gcCountAtStart = totalGcCount();
+    }
+
+    /** Called once the move has been written to the server. */
+    public synchronized void moveSent() {
+        long now = System.currentTimeMillis();
+        overrun *= DECAY;
+        gcPause *= DECAY;
+        if (deadline >= 0) {
+            overrun = Math.max(overrun, now - deadline);
+            // Mean pause, since one may land between the last clock check and sending the move
+            long collections = totalGcCount() - gcCountAtStart;
+            if (collections > 0) {
+                gcPause = Math.max(gcPause, (double) (totalGcTime() - gcTimeAtStart) / collections);
+            }
+        }
+        moveSentTime = now;
+        moveStart = -1;
+        deadline = -1;
+        firstMove = false;
+    }
+
+    /** Called when the server echoes our move back, which takes about one round trip. */
+    public synchronized void moveEchoed() {
+        if (moveSentTime < 0) return;
+        latency = Math.max(latency * DECAY, System.currentTimeMillis() - moveSentTime);
+        moveSentTime = -1;
+    }
+
+    // ----- Budget ----- //
+
+    /**
+     * Deadline for the move being chosen, as a System.currentTimeMillis() time.
+     * @param weight share of the usable time to spend, 1 in the positions that matter most
+     */
+    public synchronized long getDeadline(double weight) {
+        long start = clientDriven && moveStart >= 0 ? moveStart : System.currentTimeMillis();
+        long timeout = firstMove ? firstMoveTimeout : moveTimeout;
+        long usable = Math.max(timeout / 2, timeout - getMargin());
+        deadline = start + (long) (usable * Math.min(1, Math.max(0, weight)));
+        if (!clientDriven) {
+            firstMove = false; // No moveSent will follow
+        }
+        return deadline;
+    }
+
+    /**
+     * Whether the leading move can no longer be overtaken before the deadline. At most
+     * maxGainPerIteration is added to any one move's score per iteration, so if the gap to
+     * the runner-up is larger than what the remaining iterations could add, searching on
+     * cannot change the choice.
+     * @param iterations iterations run so far
+     * @param elapsed milliseconds the search has run for
+     * @param remaining milliseconds left until the deadline
+     */
+    public static boolean cannotBeOvertaken(double bestScore, double secondScore, double maxGainPerIteration,
+            long iterations, long elapsed, long remaining) {
+        if (elapsed <= 0 || remaining <= 0) return remaining <= 0;
+        double remainingIterations = (double) iterations / elapsed * remaining;
+        return bestScore - secondScore > remainingIterations * maxGainPerIteration;
+    }
+
+    /**
+     * Whether move A is better than move B with high confidence: the lower bound of A's win
+     * rate is above the upper bound of B's. The bounds use the largest possible variance of a
+     * win rate (1/4), so they hold whatever the rates are. A move never tried could be
+     * anything, so nothing is clearly better than it.
+     */
+    public static boolean clearlyBetter(double winsA, long visitsA, double winsB, long visitsB) {
+        if (visitsA < MIN_CONFIDENT_VISITS || visitsB == 0) return false;
+        return winsA / visitsA - confidenceRadius(visitsA) > winsB / visitsB + confidenceRadius(visitsB);
+    }
+
+    private static double confidenceRadius(long visits) {
+        return CONFIDENCE_Z * 0.5 / Math.sqrt(visits);
+    }
+
+    private static long totalGcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long totalGcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+}
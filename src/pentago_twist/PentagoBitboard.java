@@ -0,0 +1,119 @@
+package pentago_twist;
+
+/**
+ * Bit-level helpers for the packed board representation used by PentagoBoardState.
+ *
+ * Each colour is stored in one long, with cell (x, y) at bit x * 6 + y, so only the
+ * low 36 bits are ever set. Quadrants are numbered as in the rest of the game logic:
+ * 0 top left, 1 top right, 2 bottom left, 3 bottom right.
+ *
+ * Rotating or flipping a quadrant is a lookup: the 9 cells of the quadrant are gathered
+ * into a 9-bit pattern, which indexes a precomputed table holding the twisted cells at
+ * their board positions.
+ * @author mgrenander
+ */
+public final class PentagoBitboard {
+    public static final int NUM_CELLS = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE;
+    public static final long FULL_BOARD = (1L << NUM_CELLS) - 1;
+    public static final int QUAD_SIZE = 3;
+    public static final int NUM_QUADS = 4;
+    public static final int QUAD_CELLS = QUAD_SIZE * QUAD_SIZE;
+    public static final int QUAD_PATTERNS = 1 << QUAD_CELLS;
+
+    public static final int ROTATE = 0;
+    public static final int FLIP = 1;
+    public static final int NUM_TWISTS = 2;
+
+    private static final int[] QUAD_ORIGIN = new int[NUM_QUADS];
+    private static final long[] QUAD_MASK = new long[NUM_QUADS];
+    private static final long[][][] TWIST_TABLE = new long[NUM_QUADS][NUM_TWISTS][QUAD_PATTERNS];
+    private static final long[][][] UNTWIST_TABLE = new long[NUM_QUADS][NUM_TWISTS][QUAD_PATTERNS];
+
+    static {
+        for (int q = 0; q < NUM_QUADS; q++) {
+            QUAD_ORIGIN[q] = cell((q / 2) * QUAD_SIZE, (q % 2) * QUAD_SIZE);
+            for (int k = 0; k < QUAD_CELLS; k++) {
+                QUAD_MASK[q] |= 1L << quadCell(q, k);
+            }
+            for (int t = 0; t < NUM_TWISTS; t++) {
+                for (int pattern = 0; pattern < QUAD_PATTERNS; pattern++) {
+                    int twisted = twistPattern(pattern, t);
+                    TWIST_TABLE[q][t][pattern] = scatter(q, twisted);
+                    UNTWIST_TABLE[q][t][twisted] = scatter(q, pattern);
+                }
+            }
+        }
+    }
+
+    private PentagoBitboard() {}
+
+    /** Bit index of the board cell (x, y). */
+    public static int cell(int x, int y) { return x * PentagoBoardState.BOARD_SIZE + y; }
+
+    public static int cellX(int cell) { return cell / PentagoBoardState.BOARD_SIZE; }
+
+    public static int cellY(int cell) { return cell % PentagoBoardState.BOARD_SIZE; }
+
+    public static long bit(int x, int y) { return 1L << cell(x, y); }
+
+    public static int quadrantOf(int cell) {
+        return (cellX(cell) / QUAD_SIZE) * 2 + cellY(cell) / QUAD_SIZE;
+    }
+
+    public static long quadrantMask(int quad) { return QUAD_MASK[quad]; }
+
+    /**
+     * Board cell of the k-th cell (row-major, 0..8) of a quadrant.
+     */
+    public static int quadCell(int quad, int k) {
+        return QUAD_ORIGIN[quad] + (k / QUAD_SIZE) * PentagoBoardState.BOARD_SIZE + k % QUAD_SIZE;
+    }
+
+    /**
+     * Gathers the 9 cells of a quadrant into a row-major 9-bit pattern.
+     */
+    public static int quadrantPattern(long bits, int quad) {
+        int o = QUAD_ORIGIN[quad];
+        return (int) (((bits >>> o) & 7)
+                | ((bits >>> (o + PentagoBoardState.BOARD_SIZE)) & 7) << 3
+                | ((bits >>> (o + 2 * PentagoBoardState.BOARD_SIZE)) & 7) << 6);
+    }
+
+    /**
+     * Rotates (90 degrees right) or flips (mirrors left to right) one quadrant of a colour mask.
+     */
+    public static long twist(long bits, int quad, int twist) {
+        return (bits & ~QUAD_MASK[quad]) | TWIST_TABLE[quad][twist][quadrantPattern(bits, quad)];
+    }
+
+    /**
+     * Undoes twist(bits, quad, twist).
+     */
+    public static long untwist(long bits, int quad, int twist) {
+        return (bits & ~QUAD_MASK[quad]) | UNTWIST_TABLE[quad][twist][quadrantPattern(bits, quad)];
+    }
+
+    private static long scatter(int quad, int pattern) {
+        long bits = 0;
+        for (int k = 0; k < QUAD_CELLS; k++) {
+            if ((pattern & (1 << k)) != 0) {
+                bits |= 1L << quadCell(quad, k);
+            }
+        }
+        return bits;
+    }
+
+    private static int twistPattern(int pattern, int twist) {
+        int out = 0;
+        for (int r = 0; r < QUAD_SIZE; r++) {
+            for (int c = 0; c < QUAD_SIZE; c++) {
+                if ((pattern & (1 << (r * QUAD_SIZE + c))) == 0) continue;
+                // rotate: (r, c) -> (c, 2 - r), flip: (r, c) -> (r, 2 - c)
+                int nr = twist == ROTATE ? c : r;
+                int nc = twist == ROTATE ? QUAD_SIZE - 1 - r : QUAD_SIZE - 1 - c;
+                out |= 1 << (nr * QUAD_SIZE + nc);
+            }
+        }
+        return out;
+    }
+}
@@ -22,6 +22,7 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
     private static final Color BACKGROUND_COLOR = Color.GRAY;
     private static final Color LINE_COLOR = Color.BLACK;
     private static final Color HIGHLIGHT_COLOR = new Color(204, 255, 0, 113);
+    private static final Color WIN_LINE_COLOR = new Color(255, 0, 0, 90);
     private static final Color BOARD_COLOR2 = new Color(245, 222, 179); // a subtle "wheat" color for the board...
     private static final Color BOARD_COLOR1 = new Color(244, 164, 96); // complemented with a tasteful "sandybrown".
     private static final Color WHITE_COL = Color.WHITE;
@@ -129,6 +130,16 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
             gp.draw(g2);
         }
 
+        // Highlight completed five-in-a-rows
+        PentagoBoardState pbs = (PentagoBoardState) getCurrentBoard().getBoardState();
+        long winCells = PentagoWinLines.cellsOf(pbs.getWinningLines(PentagoBoardState.WHITE))
+                | PentagoWinLines.cellsOf(pbs.getWinningLines(PentagoBoardState.BLACK));
+        g2.setColor(WIN_LINE_COLOR);
+        for (; winCells != 0; winCells &= winCells - 1) {
+            int cell = Long.numberOfTrailingZeros(winCells);
+            g2.fillRect(PentagoBitboard.cellY(cell) * SQUARE_SIZE, PentagoBitboard.cellX(cell) * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+        }
+
         if (isQuadSelected) {
             g2.setColor(HIGHLIGHT_COLOR);
             switch (quadSelection){
@@ -209,7 +220,6 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
         if (pbs.isPlaceLegal(dest)) {
             isPieceSelected = true;
             pieceSelection = new PentagoCoord(dest.getX(), dest.getY());
-            pbs.getBoard()[dest.getX()][dest.getY()] = pbs.getTurnPlayer() == PentagoBoardState.WHITE ? Piece.WHITE : Piece.BLACK;
             humanRepaint();
             System.out.println("PIECE PLACED");
         }
@@ -258,6 +268,9 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
         for (int i = 0; i < PentagoBoardState.BOARD_SIZE; i++) {
             for (int j = 0; j < PentagoBoardState.BOARD_SIZE; j++) {
                 Piece p = pbs.getPieceAt(i, j);
+                if (isPieceSelected && pieceSelection.getX() == i && pieceSelection.getY() == j) { // Piece placed but move not completed
+                    p = pbs.getTurnPlayer() == PentagoBoardState.WHITE ? Piece.WHITE : Piece.BLACK;
+                }
                 if (p != Piece.EMPTY) {
                     int xPos = j * SQUARE_SIZE + SQUARE_SIZE / 2;
                     int yPos = i * SQUARE_SIZE + SQUARE_SIZE / 2;
@@ -4,7 +4,7 @@ import boardgame.BoardState;
 import boardgame.Move;
 
 import java.util.ArrayList;
-import java.util.function.UnaryOperator;
+import java.util.Arrays;
 import java.util.Random;
 
 import java.util.Scanner;
@@ -16,11 +16,13 @@ import java.util.Scanner;
  */
 public class PentagoBoardState extends BoardState {
     public static final int BOARD_SIZE = 6;
-    private static final int QUAD_SIZE = 3;
-    private static final int NUM_QUADS = 4;
+    private static final int QUAD_SIZE = PentagoBitboard.QUAD_SIZE;
+    private static final int NUM_QUADS = PentagoBitboard.NUM_QUADS;
     public static final int WHITE = 0;
     public static final int BLACK = 1;
     public static final int MAX_TURNS = 18;
+    /** Number of packed move codes, see PentagoMove.encode. */
+    public static final int MAX_MOVE_CODES = PentagoMove.NUM_CODES;
     private static final int ILLEGAL = -1;
     public enum Piece {
         BLACK, WHITE, EMPTY;
@@ -30,14 +32,15 @@ public class PentagoBoardState extends BoardState {
         }
     }
 
-    private static final UnaryOperator<PentagoCoord> getNextHorizontal = c -> new PentagoCoord(c.getX(), c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextVertical = c -> new PentagoCoord(c.getX()+1, c.getY());
-    private static final UnaryOperator<PentagoCoord> getNextDiagRight = c -> new PentagoCoord(c.getX()+1, c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextDiagLeft = c -> new PentagoCoord(c.getX()+1, c.getY()-1);
     private static int FIRST_PLAYER = 0;
 
-    private Piece[][] board;
-    private Piece[][][] quadrants;
+    // One bit per cell for each colour, see PentagoBitboard for the layout
+    private long whitePieces;
+    private long blackPieces;
+    private long zobrist; // Kept up to date by processMove, see PentagoZobrist
+    private Piece[][] board; // Built lazily by getBoard()
+    private long[] history; // Undo records of applyMove, allocated on first use
+    private int historySize;
     private int turnPlayer;
     private int turnNumber;
     private int winner;
@@ -45,22 +48,10 @@ public class PentagoBoardState extends BoardState {
 
     PentagoBoardState() {
         super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                this.board[i][j] = Piece.EMPTY;
-            }
-        }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                for (int k = 0; k < QUAD_SIZE; k++) {
-                    this.quadrants[i][j][k] = Piece.EMPTY;
-                }
-            }
-        }
+        this.whitePieces = 0;
+        this.blackPieces = 0;
+        this.zobrist = 0;
 
-        rand = new Random(2019);
         winner = Board.NOBODY;
         turnPlayer = FIRST_PLAYER;
         turnNumber = 0;
@@ -69,30 +60,100 @@ public class PentagoBoardState extends BoardState {
     // For cloning
     private PentagoBoardState(PentagoBoardState pbs) {
         super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            System.arraycopy(pbs.board[i], 0, this.board[i], 0, BOARD_SIZE);
-        }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                System.arraycopy(pbs.quadrants[i][j], 0, this.quadrants[i][j], 0, QUAD_SIZE);
-            }
-        }
+        this.whitePieces = pbs.whitePieces;
+        this.blackPieces = pbs.blackPieces;
+        this.zobrist = pbs.zobrist;
 
-        rand = new Random(2019);
         this.winner = pbs.winner;
         this.turnPlayer = pbs.turnPlayer;
         this.turnNumber = pbs.turnNumber;
     }
 
-    public Piece[][] getBoard() { return this.board; }
+    /**
+     * Returns the board as a grid of pieces. The grid is rebuilt from the bitboards after
+     * each move, so changes made to it by the caller do not affect the state.
+     */
+    public Piece[][] getBoard() {
+        if (board == null) {
+            board = new Piece[BOARD_SIZE][BOARD_SIZE];
+            for (int i = 0; i < BOARD_SIZE; i++) {
+                for (int j = 0; j < BOARD_SIZE; j++) {
+                    board[i][j] = pieceAt(PentagoBitboard.cell(i, j));
+                }
+            }
+        }
+        return board;
+    }
+
+    /** Bitboard of the pieces of the given player. */
+    public long getPieces(int player) { return player == WHITE ? whitePieces : blackPieces; }
+
+    /** 64-bit Zobrist key of the pieces on the board. */
+    public long getZobristKey() { return zobrist; }
+
+    /**
+     * Zobrist key of the position after a legal move, computed without playing it. Cheaper
+     * than applyMove/undoMove when only the key is needed, e.g. to look up children.
+     */
+    public long getZobristKeyAfter(int moveCode) {
+        int cell = PentagoMove.cellOf(moveCode);
+        int quad = PentagoMove.quadrantOf(moveCode);
+        int twist = PentagoMove.twistOf(moveCode);
+        long white = turnPlayer == WHITE ? whitePieces | 1L << cell : whitePieces;
+        long black = turnPlayer == BLACK ? blackPieces | 1L << cell : blackPieces;
+        int whitePattern = PentagoBitboard.quadrantPattern(white, quad);
+        int blackPattern = PentagoBitboard.quadrantPattern(black, quad);
+        return zobrist ^ PentagoZobrist.piece(turnPlayer, cell)
+                ^ PentagoZobrist.quadrant(WHITE, quad, whitePattern)
+                ^ PentagoZobrist.quadrant(WHITE, quad, PentagoBitboard.quadrantPattern(PentagoBitboard.twist(white, quad, twist), quad))
+                ^ PentagoZobrist.quadrant(BLACK, quad, blackPattern)
+                ^ PentagoZobrist.quadrant(BLACK, quad, PentagoBitboard.quadrantPattern(PentagoBitboard.twist(black, quad, twist), quad));
+    }
+
+    /**
+     * Symmetry (see PentagoSymmetry) that maps this position to its canonical form. A move
+     * chosen in the canonical form is mapped back with
+     * PentagoSymmetry.transformMove(code, PentagoSymmetry.inverse(symmetry)).
+     */
+    public int getCanonicalSymmetry() {
+        return PentagoSymmetry.canonicalSymmetry(whitePieces, blackPieces);
+    }
+
+    /**
+     * Zobrist key of the canonical form of this position. Positions that are symmetric to each
+     * other have the same canonical key, so it can be used to share transposition table or
+     * opening book entries between them.
+     */
+    public long getCanonicalKey() {
+        int symmetry = getCanonicalSymmetry();
+        if (symmetry == PentagoSymmetry.IDENTITY) return zobrist;
+        return PentagoZobrist.hash(PentagoSymmetry.transform(whitePieces, symmetry), PentagoSymmetry.transform(blackPieces, symmetry));
+    }
+
+    /** Bitboard of the empty cells. */
+    public long getEmptyCells() { return ~(whitePieces | blackPieces) & PentagoBitboard.FULL_BOARD; }
 
     @Override
     public Object clone() {
         return new PentagoBoardState(this);
     }
 
+    /**
+     * Overwrites this state with a copy of another, like clone() but reusing this object.
+     * The undo stack is emptied.
+     */
+    public void copyFrom(PentagoBoardState pbs) {
+        this.whitePieces = pbs.whitePieces;
+        this.blackPieces = pbs.blackPieces;
+        this.zobrist = pbs.zobrist;
+        this.board = null;
+        this.historySize = 0;
+
+        this.winner = pbs.winner;
+        this.turnPlayer = pbs.turnPlayer;
+        this.turnNumber = pbs.turnNumber;
+    }
+
     @Override
     public int getWinner() { return winner; }
 
@@ -106,43 +167,83 @@ public class PentagoBoardState extends BoardState {
     public int getTurnNumber() { return turnNumber; }
 
     @Override
-    public boolean isInitialized() { return board != null; }
+    public boolean isInitialized() { return true; }
 
     @Override
     public int firstPlayer() { return FIRST_PLAYER; }
 
     @Override
     public Move getRandomMove() {
-        ArrayList<PentagoMove> moves = getAllLegalMoves();
-        return moves.get(rand.nextInt(moves.size()));
+        if (rand == null) { rand = new Random(2019); }
+        return PentagoMove.fromMoveCode(randomLegalMoveCode(rand), turnPlayer);
+    }
+
+    /**
+     * Picks a legal move uniformly at random without enumerating the moves, and returns its
+     * packed code (see PentagoMove.encode). Draws the same move as picking a random element of
+     * getAllLegalMoves() with the same generator.
+     */
+    public int randomLegalMoveCode(Random rng) {
+        long empty = getEmptyCells();
+        int index = rng.nextInt(Long.bitCount(empty) * 8);
+        for (int skip = index >>> 3; skip > 0; skip--) {
+            empty &= empty - 1;
+        }
+        return Long.numberOfTrailingZeros(empty) << 3 | (index & 7);
+    }
+
+    /**
+     * Writes the packed codes (see PentagoMove.encode) of all legal moves into moves, in the same
+     * order as getAllLegalMoves(), and returns how many were written. The buffer needs room for
+     * 8 codes per empty cell; MAX_MOVE_CODES is always enough.
+     */
+    public int getAllLegalMoveCodes(int[] moves) {
+        int n = 0;
+        for (long empty = getEmptyCells(); empty != 0; empty &= empty - 1) {
+            int base = Long.numberOfTrailingZeros(empty) << 3;
+            for (int k = 0; k < 8; k++) {
+                moves[n++] = base | k;
+            }
+        }
+        return n;
+    }
+
+    /** Number of legal moves, without generating them. */
+    public int getNumLegalMoves() {
+        return Long.bitCount(getEmptyCells()) * 8;
     }
 
     public Piece getPieceAt(int xPos, int yPos) {
         if (xPos < 0 || xPos >= BOARD_SIZE || yPos < 0 || yPos >= BOARD_SIZE) {
             throw new IllegalArgumentException("Out of range");
         }
-        return board[xPos][yPos];
+        return pieceAt(PentagoBitboard.cell(xPos, yPos));
     }
 
     public Piece getPieceAt(PentagoCoord coord) {
         return getPieceAt(coord.getX(), coord.getY());
     }
 
+    private Piece pieceAt(int cell) {
+        long mask = 1L << cell;
+        if ((whitePieces & mask) != 0) return Piece.WHITE;
+        if ((blackPieces & mask) != 0) return Piece.BLACK;
+        return Piece.EMPTY;
+    }
+
+    private boolean isEmptyAt(int x, int y) {
+        return ((whitePieces | blackPieces) & PentagoBitboard.bit(x, y)) == 0;
+    }
+
     public ArrayList<PentagoMove> getAllLegalMoves() {
         ArrayList<PentagoMove> legalMoves = new ArrayList<>();
-        for (int i = 0; i < BOARD_SIZE; i++) { //Iterate through positions on board
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (board[i][j] == Piece.EMPTY) {
-//                    for (int k = 0; k < NUM_QUADS - 1; k++) { // Iterate through valid swaps
-//                        for (int l = k+1; l < NUM_QUADS; l++) {
-//                            legalMoves.add(new PentagoMove(i, j, k, l, turnPlayer));
-//                        }
-//                    }
-                    for (int k = 0; k < NUM_QUADS; k++) { // Iterate through valid moves for rotate/flip
-                        for (int l = 0; l < 2; l++) {
-                            legalMoves.add(new PentagoMove(i, j, k, l, turnPlayer));
-                        }
-                    }
+        for (long empty = getEmptyCells(); empty != 0; empty &= empty - 1) { // Iterate through empty cells in row-major order
+            int cell = Long.numberOfTrailingZeros(empty);
+            int i = PentagoBitboard.cellX(cell);
+            int j = PentagoBitboard.cellY(cell);
+            for (int k = 0; k < NUM_QUADS; k++) { // Iterate through valid moves for rotate/flip
+                for (int l = 0; l < 2; l++) {
+                    legalMoves.add(new PentagoMove(i, j, k, l, turnPlayer));
                 }
             }
         }
@@ -150,17 +251,13 @@ public class PentagoBoardState extends BoardState {
     }
 
     public boolean isLegal(PentagoMove m) {
-        // for swap
-        //if (m.getASwap() < 0 || m.getASwap() >= NUM_QUADS || m.getBSwap() < 0 || m.getBSwap() >= NUM_QUADS) { return false; }
-        //if (m.getASwap() == m.getBSwap()) { return false; } // Cannot swap same tile
-
         // update for rotate90 and flip
         if (m.getASwap() < 0 || m.getASwap() >= NUM_QUADS || m.getBSwap() < 0 || m.getBSwap() >= 2) { return false; }
 
         PentagoCoord c = m.getMoveCoord();
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
         if (turnPlayer != m.getPlayerID() || m.getPlayerID() == ILLEGAL) { return false; } //Check right player
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmptyAt(c.getX(), c.getY());
     }
 
     /**
@@ -170,101 +267,135 @@ public class PentagoBoardState extends BoardState {
      */
     public boolean isPlaceLegal(PentagoCoord c) {
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmptyAt(c.getX(), c.getY());
+    }
+
+    /**
+     * Check if a packed move code (see PentagoMove.encode) is legal for the player to move.
+     */
+    public boolean isLegal(int code) {
+        return code >= 0 && code < MAX_MOVE_CODES && (getEmptyCells() & 1L << PentagoMove.cellOf(code)) != 0;
     }
 
     public void processMove(PentagoMove m) throws IllegalArgumentException {
         if (!isLegal(m)) { throw new IllegalArgumentException("Invalid move. Move: " + m.toPrettyString()); }
-        updateQuadrants(m);
-        updateWinner();
-        if (turnPlayer != FIRST_PLAYER) { turnNumber += 1; } // Update the turn number if needed
-        turnPlayer = 1 - turnPlayer; // Swap player
+        PentagoCoord c = m.getMoveCoord();
+        play(PentagoBitboard.cell(c.getX(), c.getY()), m.getASwap(), m.getBSwap());
     }
 
     /**
-     * Updates the appropriate quandrant based on the location of the move m
+     * Plays a move given as a packed code (see PentagoMove.encode) for the player to move.
+     */
+    public void processMove(int code) throws IllegalArgumentException {
+        if (!isLegal(code)) { throw new IllegalArgumentException("Invalid move code: " + code); }
+        play(PentagoMove.cellOf(code), PentagoMove.quadrantOf(code), PentagoMove.twistOf(code));
+    }
+
+    /**
+     * Plays a move in place like processMove, but remembers how to take it back with undoMove.
+     * Unlike clone() followed by processMove, this allocates nothing once the undo stack exists,
+     * so a depth-first search can walk the tree on a single state. A clone starts with an empty
+     * undo stack.
      * @param m: Pentago move
      */
-    private void updateQuadrants(PentagoMove m) {
-        Piece turnPiece = turnPlayer == WHITE ? Piece.WHITE : Piece.BLACK;
-        int x = m.getMoveCoord().getX();
-        int y = m.getMoveCoord().getY();
-        boolean isLeftQuadMove = y / 3 == 0;
-        boolean isTopQuadMove = x / 3 == 0;
-        if (isLeftQuadMove && isTopQuadMove) { //Top left quadrant
-            quadrants[0][x][y] = turnPiece;
-        } else if (!isLeftQuadMove && isTopQuadMove) { //Top right quadrant
-            quadrants[1][x][y % QUAD_SIZE] = turnPiece;
-        } else if (isLeftQuadMove) { //Bottom left quadrant
-            quadrants[2][x % QUAD_SIZE][y] = turnPiece;
-        } else { //Bottom right quadrant
-            quadrants[3][x % QUAD_SIZE][y % QUAD_SIZE] = turnPiece;
-        }
+    public void applyMove(PentagoMove m) throws IllegalArgumentException {
+        if (!isLegal(m)) { throw new IllegalArgumentException("Invalid move. Move: " + m.toPrettyString()); }
+        PentagoCoord c = m.getMoveCoord();
+        int cell = PentagoBitboard.cell(c.getX(), c.getY());
+        pushUndo(cell, m.getASwap(), m.getBSwap());
+        play(cell, m.getASwap(), m.getBSwap());
+    }
 
-        //Swapping mechanism
-        int a = m.getASwap();
-        int b = m.getBSwap();
-        Piece[][] tmp = quadrants[a];
-        //quadrants[a] = quadrants[b];
-        //quadrants[b] = tmp;
-        Piece[][] tmp2 = new Piece [quadrants[a].length][quadrants[a].length];
-
-
-        int N = tmp.length;
-        // check
-//        for (int j = 0; j < N; j++)
-//        {
-//            for (int i = 0; i <N; i++){
-//                System.out.print(tmp[j][i]);
-//            }
-//        }
-        switch (b){
-            case 0:
-                // rotate 90 right
-                //System.out.println("Rotate");
-                for (int j = 0; j < N; j++)
-                {
-                    for (int i = N - 1; i >= 0; i--) {
-                        //System.arraycopy(quadrants[a][j],  N - 1 - i, tmp[i], j, 1);
-                        System.arraycopy(tmp[i], j, tmp2[j],  N - 1 - i, 1);
-                    }
-                }
-                break;
-            case 1:
-               // flip a quadrant
-                //System.out.println("Flip");
-                for (int j = 0; j < N; j++)
-                {
-                    for (int i = N - 1; i >= 0; i--) {
-                        //System.arraycopy(quadrants[a][j],  N - 1 - i, tmp[i], j, 1);
-                        System.arraycopy(tmp[j], i, tmp2[j],  N - 1 - i, 1);
-                    }
-                }
-                break;
+    /**
+     * Same as applyMove(PentagoMove) for a packed move code (see PentagoMove.encode).
+     */
+    public void applyMove(int code) throws IllegalArgumentException {
+        if (!isLegal(code)) { throw new IllegalArgumentException("Invalid move code: " + code); }
+        int cell = PentagoMove.cellOf(code);
+        int quad = PentagoMove.quadrantOf(code);
+        int twist = PentagoMove.twistOf(code);
+        pushUndo(cell, quad, twist);
+        play(cell, quad, twist);
+    }
 
-        }
+    /**
+     * Takes back the last move played with applyMove.
+     */
+    public void undoMove() {
+        if (historySize == 0) { throw new IllegalStateException("No move to undo"); }
+        long record = history[--historySize];
+        int cell = (int) (record & 0x3F);
+        int quad = (int) ((record >>> 6) & 0x3);
+        int twist = (int) ((record >>> 8) & 0x1);
+        turnPlayer = (int) ((record >>> 9) & 0x1);
+        turnNumber = (int) ((record >>> 10) & 0x1F);
+        winner = (int) (record >>> 32);
+        twistQuadrant(quad, twist, true);
+        togglePiece(turnPlayer, cell);
+    }
 
+    /** Number of moves that undoMove can take back. */
+    public int getUndoDepth() { return historySize; }
 
-        quadrants[a] = tmp2;
-        buildBoardFromQuadrants();
+    /**
+     * Undo record layout: cell in bits 0-5, quadrant in bits 6-7, twist in bit 8, previous turn
+     * player in bit 9, previous turn number in bits 10-14 and previous winner in the high 32 bits.
+     */
+    private void pushUndo(int cell, int quad, int twist) {
+        if (history == null) {
+            history = new long[PentagoBitboard.NUM_CELLS];
+        } else if (historySize == history.length) {
+            history = Arrays.copyOf(history, 2 * history.length);
+        }
+        history[historySize++] = cell | (long) quad << 6 | (long) twist << 8 | (long) turnPlayer << 9
+                | (long) turnNumber << 10 | (long) winner << 32;
     }
 
+    private void play(int cell, int quad, int twist) {
+        togglePiece(turnPlayer, cell);
+        twistQuadrant(quad, twist, false);
+        updateWinner();
+        if (turnPlayer != FIRST_PLAYER) { turnNumber += 1; } // Update the turn number if needed
+        turnPlayer = 1 - turnPlayer; // Swap player
+    }
 
+    /**
+     * Adds or removes a piece of the given player.
+     */
+    private void togglePiece(int player, int cell) {
+        if (player == WHITE) {
+            whitePieces ^= 1L << cell;
+        } else {
+            blackPieces ^= 1L << cell;
+        }
+        zobrist ^= PentagoZobrist.piece(player, cell);
+        board = null;
+    }
 
-    private void buildBoardFromQuadrants() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            int quadrantRow = i < 3 ? i : i - 3;
-            int leftQuad = i < 3 ? 0 : 2;
-            int rightQuad = i < 3 ? 1 : 3;
-            System.arraycopy(quadrants[leftQuad][quadrantRow], 0, board[i], 0, 3);
-            System.arraycopy(quadrants[rightQuad][quadrantRow], 0, board[i], 3, 3);
+    /**
+     * Rotates or flips a quadrant of both colours, or reverts that when undo is set.
+     */
+    private void twistQuadrant(int quad, int twist, boolean undo) {
+        int whiteBefore = PentagoBitboard.quadrantPattern(whitePieces, quad);
+        int blackBefore = PentagoBitboard.quadrantPattern(blackPieces, quad);
+        if (undo) {
+            whitePieces = PentagoBitboard.untwist(whitePieces, quad, twist);
+            blackPieces = PentagoBitboard.untwist(blackPieces, quad, twist);
+        } else {
+            whitePieces = PentagoBitboard.twist(whitePieces, quad, twist);
+            blackPieces = PentagoBitboard.twist(blackPieces, quad, twist);
         }
+        zobrist ^= PentagoZobrist.quadrant(WHITE, quad, whiteBefore)
+                ^ PentagoZobrist.quadrant(WHITE, quad, PentagoBitboard.quadrantPattern(whitePieces, quad))
+                ^ PentagoZobrist.quadrant(BLACK, quad, blackBefore)
+                ^ PentagoZobrist.quadrant(BLACK, quad, PentagoBitboard.quadrantPattern(blackPieces, quad));
+        board = null;
     }
 
     private void updateWinner() {
-        boolean playerWin = checkVerticalWin(turnPlayer) || checkHorizontalWin(turnPlayer) || checkDiagRightWin(turnPlayer) || checkDiagLeftWin(turnPlayer);
+        boolean playerWin = PentagoWinLines.hasLine(getPieces(turnPlayer));
         int otherPlayer = 1 - turnPlayer;
-        boolean otherWin = checkVerticalWin(otherPlayer) || checkHorizontalWin(otherPlayer) || checkDiagRightWin(otherPlayer) || checkDiagLeftWin(otherPlayer);
+        boolean otherWin = PentagoWinLines.hasLine(getPieces(otherPlayer));
         if (playerWin) { // Current player has won
             winner = otherWin ? Board.DRAW : turnPlayer;
         } else if (otherWin) { // Player's move caused the opponent to win
@@ -274,55 +405,34 @@ public class PentagoBoardState extends BoardState {
         }
     }
 
+    /**
+     * Lines completed by a player, as a set of PentagoWinLines indices (bit i for line i).
+     * Use PentagoWinLines.cellsOf to get the cells they cover.
+     */
+    public int getWinningLines(int player) {
+        return PentagoWinLines.completedLines(getPieces(player));
+    }
+
     @Override
     public boolean gameOver() {
         return ((turnNumber >= MAX_TURNS - 1) && turnPlayer == BLACK) || winner != Board.NOBODY;
     }
 
-    private boolean checkVerticalWin(int player) {
-        return checkWinRange(player, 0, 2, 0, BOARD_SIZE, getNextVertical);
-    }
-
-    private boolean checkHorizontalWin(int player) {
-        return checkWinRange(player, 0, BOARD_SIZE, 0, 2, getNextHorizontal);
-    }
-
-    private boolean checkDiagRightWin(int player) {
-        return checkWinRange(player, 0, 2, 0, 2, getNextDiagRight);
-    }
-
-    private boolean checkDiagLeftWin(int player) {
-        return checkWinRange(player, 0 ,2, BOARD_SIZE - 2, BOARD_SIZE, getNextDiagLeft);
+    /**
+     * Two states are equal if they have the same pieces, player to move, turn number and winner.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PentagoBoardState)) return false;
+        PentagoBoardState pbs = (PentagoBoardState) o;
+        return zobrist == pbs.zobrist && whitePieces == pbs.whitePieces && blackPieces == pbs.blackPieces
+                && turnPlayer == pbs.turnPlayer && turnNumber == pbs.turnNumber && winner == pbs.winner;
     }
 
-    private boolean checkWinRange(int player, int xStart, int xEnd, int yStart, int yEnd, UnaryOperator<PentagoCoord> direction) {
-        boolean win = false;
-        for (int i = xStart; i < xEnd; i++) {
-            for (int j = yStart; j < yEnd; j++) {
-                win |= checkWin(player, new PentagoCoord(i, j), direction);
-                if (win) { return true; }
-            }
-        }
-        return false;
-    }
-
-    private boolean checkWin(int player, PentagoCoord start, UnaryOperator<PentagoCoord> direction) {
-        int winCounter = 0;
-        Piece currColour = player == 0 ? Piece.WHITE : Piece.BLACK;
-        PentagoCoord current = start;
-        while(true) {
-            try {
-                if (currColour == this.board[current.getX()][current.getY()]) {
-                    winCounter++;
-                    current = direction.apply(current);
-                } else {
-                    break;
-                }
-            } catch (IllegalArgumentException e) { //We have run off the board
-                break;
-            }
-        }
-        return winCounter >= 5;
+    @Override
+    public int hashCode() {
+        return (int) (zobrist ^ (zobrist >>> 32));
     }
 
     public void printBoard() {
@@ -338,7 +448,7 @@ public class PentagoBoardState extends BoardState {
             boardString.append("|");
             for (int j = 0; j < BOARD_SIZE; j++) {
                 boardString.append(" ");
-                boardString.append(board[i][j].toString());
+                boardString.append(pieceAt(PentagoBitboard.cell(i, j)).toString());
                 boardString.append(" |");
                 if (j == QUAD_SIZE - 1) {
                     boardString.append("|");
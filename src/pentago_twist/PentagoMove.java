@@ -6,6 +6,16 @@ import boardgame.Move;
  * @author mgrenander
  */
 public class PentagoMove extends Move {
+    /** Number of distinct packed move codes, see encode. */
+    public static final int NUM_CODES = PentagoBitboard.NUM_CELLS * PentagoBitboard.NUM_QUADS * PentagoBitboard.NUM_TWISTS;
+
+    private static final PentagoCoord[] COORDS = new PentagoCoord[PentagoBitboard.NUM_CELLS];
+    static {
+        for (int cell = 0; cell < COORDS.length; cell++) {
+            COORDS[cell] = new PentagoCoord(PentagoBitboard.cellX(cell), PentagoBitboard.cellY(cell));
+        }
+    }
+
     private int playerId;
     private int xMove;
     private int yMove;
@@ -40,8 +50,40 @@ public class PentagoMove extends Move {
         }
     }
 
+    public static PentagoMove fromMoveCode(int code, int playerId) {
+        int cell = cellOf(code);
+        return new PentagoMove(PentagoBitboard.cellX(cell), PentagoBitboard.cellY(cell), quadrantOf(code), twistOf(code), playerId);
+    }
+
+    // Packed move codes: cell * 8 + quadrant * 2 + twist, with cell the PentagoBitboard index
+    // of the placed piece. Codes fit in 9 bits and range over 0 .. NUM_CODES - 1.
+    public static int encode(int x, int y, int quadrant, int twist) {
+        return PentagoBitboard.cell(x, y) << 3 | quadrant << 1 | twist; }
+    public static int cellOf(int code) {
+        return code >>> 3; }
+    public static int quadrantOf(int code) {
+        return (code >>> 1) & 3; }
+    public static int twistOf(int code) {
+        return code & 1; }
+
+    /**
+     * Packed code of this move, without the player id.
+     */
+    public int toMoveCode() {
+        if (!isInRange()) { throw new IllegalArgumentException("Move cannot be encoded: " + toPrettyString()); }
+        return encode(xMove, yMove, aSwap, bSwap);
+    }
+
+    private boolean isInRange() {
+        return xMove >= 0 && xMove < PentagoBoardState.BOARD_SIZE && yMove >= 0 && yMove < PentagoBoardState.BOARD_SIZE
+                && aSwap >= 0 && aSwap < PentagoBitboard.NUM_QUADS && bSwap >= 0 && bSwap < PentagoBitboard.NUM_TWISTS;
+    }
+
     // Getters
     public PentagoCoord getMoveCoord() {
+        if (xMove >= 0 && xMove < PentagoBoardState.BOARD_SIZE && yMove >= 0 && yMove < PentagoBoardState.BOARD_SIZE) {
+            return COORDS[PentagoBitboard.cell(xMove, yMove)]; // Coordinates are immutable, so share them
+        }
         return new PentagoCoord(this.xMove, this.yMove); }
     public int getASwap() {
         return this.aSwap; }
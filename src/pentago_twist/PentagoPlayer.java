@@ -19,4 +19,9 @@ public abstract class PentagoPlayer extends Player {
     final public Move chooseMove(BoardState boardState) { return chooseMove((PentagoBoardState) boardState); }
 
     public abstract Move chooseMove(PentagoBoardState boardState);
+
+    @Override
+    final public void startPondering(BoardState boardState) { startPondering((PentagoBoardState) boardState); }
+
+    public void startPondering(PentagoBoardState boardState) {}
 }
@@ -0,0 +1,68 @@
+package pentago_twist;
+
+/**
+ * Board symmetries of Pentago Twist.
+ *
+ * Only symmetries that map every legal move onto a legal move preserve the game. A mirror of
+ * the board reverses the direction of turning, so the right rotation of a quadrant becomes a
+ * left rotation. Turning the whole board keeps a rotation in the same direction, but a 90
+ * degree turn swaps the axes, so the left-right flip becomes an up-down flip. Neither left
+ * rotations nor up-down flips are moves in this variant. That leaves the identity and the 180
+ * degree turn, which sends quadrant q to quadrant 3 - q and keeps the twist.
+ *
+ * With cell (x, y) at bit x * 6 + y, the 180 degree turn sends cell i to cell 35 - i, so a
+ * colour mask is transformed by reversing its 36 bits.
+ * @author mgrenander
+ */
+public final class PentagoSymmetry {
+    public static final int IDENTITY = 0;
+    public static final int ROTATE_180 = 1;
+    public static final int NUM_SYMMETRIES = 2;
+
+    private PentagoSymmetry() {}
+
+    /** Symmetry that undoes the given one. */
+    public static int inverse(int symmetry) {
+        return symmetry; // Both symmetries are their own inverse
+    }
+
+    public static int transformCell(int cell, int symmetry) {
+        return symmetry == ROTATE_180 ? PentagoBitboard.NUM_CELLS - 1 - cell : cell;
+    }
+
+    /** Applies a symmetry to a colour mask. */
+    public static long transform(long bits, int symmetry) {
+        return symmetry == ROTATE_180 ? Long.reverse(bits) >>> (Long.SIZE - PentagoBitboard.NUM_CELLS) : bits;
+    }
+
+    /**
+     * Maps a packed move code (see PentagoMove.encode) played in a position to the equivalent
+     * move in the transformed position.
+     */
+    public static int transformMove(int code, int symmetry) {
+        if (symmetry == IDENTITY) return code;
+        return transformCell(PentagoMove.cellOf(code), symmetry) << 3
+                | (PentagoBitboard.NUM_QUADS - 1 - PentagoMove.quadrantOf(code)) << 1
+                | PentagoMove.twistOf(code);
+    }
+
+    /**
+     * Symmetry that maps a position to its canonical form: the image with the smallest
+     * (white, black) masks. Symmetric positions share the same canonical form.
+     */
+    public static int canonicalSymmetry(long whitePieces, long blackPieces) {
+        int best = IDENTITY;
+        long bestWhite = whitePieces;
+        long bestBlack = blackPieces;
+        for (int s = 1; s < NUM_SYMMETRIES; s++) {
+            long w = transform(whitePieces, s);
+            long b = transform(blackPieces, s);
+            if (w < bestWhite || (w == bestWhite && b < bestBlack)) {
+                best = s;
+                bestWhite = w;
+                bestBlack = b;
+            }
+        }
+        return best;
+    }
+}
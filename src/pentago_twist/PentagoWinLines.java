@@ -0,0 +1,80 @@
+package pentago_twist;
+
+/**
+ * The fixed set of five-in-a-row lines on the 6x6 board, as bitboard masks.
+ *
+ * There are 32 lines: 12 horizontal, 12 vertical and 4 in each diagonal direction.
+ * A set of completed lines fits in an int, with bit i standing for line i.
+ * @author mgrenander
+ */
+public final class PentagoWinLines {
+    public static final int WIN_LENGTH = 5;
+    public static final int NUM_LINES = 32;
+
+    private static final long[] LINES = new long[NUM_LINES];
+    private static final int[] CELL_LINES = new int[PentagoBitboard.NUM_CELLS];
+
+    static {
+        int n = 0;
+        int size = PentagoBoardState.BOARD_SIZE;
+        for (int x = 0; x < size; x++) { // Horizontal
+            for (int y = 0; y + WIN_LENGTH <= size; y++) { LINES[n++] = line(x, y, 0, 1); }
+        }
+        for (int x = 0; x + WIN_LENGTH <= size; x++) { // Vertical
+            for (int y = 0; y < size; y++) { LINES[n++] = line(x, y, 1, 0); }
+        }
+        for (int x = 0; x + WIN_LENGTH <= size; x++) { // Diagonal down-right
+            for (int y = 0; y + WIN_LENGTH <= size; y++) { LINES[n++] = line(x, y, 1, 1); }
+        }
+        for (int x = 0; x + WIN_LENGTH <= size; x++) { // Diagonal down-left
+            for (int y = WIN_LENGTH - 1; y < size; y++) { LINES[n++] = line(x, y, 1, -1); }
+        }
+        for (int i = 0; i < NUM_LINES; i++) {
+            for (long bits = LINES[i]; bits != 0; bits &= bits - 1) {
+                CELL_LINES[Long.numberOfTrailingZeros(bits)] |= 1 << i;
+            }
+        }
+    }
+
+    private PentagoWinLines() {}
+
+    /** Cells of line i. */
+    public static long lineMask(int line) { return LINES[line]; }
+
+    /** Set of lines (bit i for line i) passing through a cell. */
+    public static int linesThrough(int cell) { return CELL_LINES[cell]; }
+
+    /** True if the pieces contain at least one complete line. */
+    public static boolean hasLine(long pieces) {
+        for (long line : LINES) {
+            if ((pieces & line) == line) return true;
+        }
+        return false;
+    }
+
+    /** Set of lines (bit i for line i) completely covered by the pieces. */
+    public static int completedLines(long pieces) {
+        int completed = 0;
+        for (int i = 0; i < NUM_LINES; i++) {
+            if ((pieces & LINES[i]) == LINES[i]) completed |= 1 << i;
+        }
+        return completed;
+    }
+
+    /** Union of the cells of a set of lines. */
+    public static long cellsOf(int lines) {
+        long cells = 0;
+        for (; lines != 0; lines &= lines - 1) {
+            cells |= LINES[Integer.numberOfTrailingZeros(lines)];
+        }
+        return cells;
+    }
+
+    private static long line(int x, int y, int dx, int dy) {
+        long bits = 0;
+        for (int k = 0; k < WIN_LENGTH; k++) {
+            bits |= PentagoBitboard.bit(x + k * dx, y + k * dy);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,55 @@
+package pentago_twist;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys for Pentago positions.
+ *
+ * The key of a position is the XOR of one random 64-bit value per (colour, cell) occupied.
+ * Keys for whole quadrant patterns are precomputed as well, so PentagoBoardState can update
+ * its key for a quadrant twist with two lookups per colour. The keys come from a fixed seed
+ * so that they are the same in every JVM.
+ * @author mgrenander
+ */
+public final class PentagoZobrist {
+    private static final long SEED = 2019;
+
+    private static final long[][] PIECE_KEYS = new long[2][PentagoBitboard.NUM_CELLS];
+    private static final long[][][] QUAD_KEYS = new long[2][PentagoBitboard.NUM_QUADS][PentagoBitboard.QUAD_PATTERNS];
+
+    static {
+        Random rand = new Random(SEED);
+        for (int colour = 0; colour < 2; colour++) {
+            for (int cell = 0; cell < PentagoBitboard.NUM_CELLS; cell++) {
+                PIECE_KEYS[colour][cell] = rand.nextLong();
+            }
+            for (int q = 0; q < PentagoBitboard.NUM_QUADS; q++) {
+                for (int pattern = 0; pattern < PentagoBitboard.QUAD_PATTERNS; pattern++) {
+                    long key = 0;
+                    for (int k = 0; k < PentagoBitboard.QUAD_CELLS; k++) {
+                        if ((pattern & (1 << k)) != 0) key ^= PIECE_KEYS[colour][PentagoBitboard.quadCell(q, k)];
+                    }
+                    QUAD_KEYS[colour][q][pattern] = key;
+                }
+            }
+        }
+    }
+
+    private PentagoZobrist() {}
+
+    /** Key of a single piece of the given colour (PentagoBoardState.WHITE or BLACK). */
+    public static long piece(int colour, int cell) { return PIECE_KEYS[colour][cell]; }
+
+    /** Key of the pieces of one colour inside a quadrant, given as a 9-bit pattern. */
+    public static long quadrant(int colour, int quad, int pattern) { return QUAD_KEYS[colour][quad][pattern]; }
+
+    /** Key of a whole position, computed from scratch. */
+    public static long hash(long whitePieces, long blackPieces) {
+        long key = 0;
+        for (int q = 0; q < PentagoBitboard.NUM_QUADS; q++) {
+            key ^= QUAD_KEYS[PentagoBoardState.WHITE][q][PentagoBitboard.quadrantPattern(whitePieces, q)];
+            key ^= QUAD_KEYS[PentagoBoardState.BLACK][q][PentagoBitboard.quadrantPattern(blackPieces, q)];
+        }
+        return key;
+    }
+}
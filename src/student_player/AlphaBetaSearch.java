@@ -0,0 +1,386 @@
+package student_player;
+
+import boardgame.Board;
+import boardgame.Deadline;
+import pentago_twist.PentagoBoardState;
+import pentago_twist.PentagoMove;
+import pentago_twist.PentagoWinLines;
+import student_player.MyTools.*;
+
+import java.util.Arrays;
+
+import static student_player.MyTools.AB_SEARCH_MODE;
+
+/**
+ * Iterative deepening negamax with alpha-beta pruning and a transposition table.
+ *
+ * Each iteration searches one ply deeper than the last. Its first path follows the principal
+ * variation of the previous iteration, and at every other node the best move stored in the
+ * table is tried first, so the earlier iterations mostly pay for themselves in cutoffs. The
+ * other moves follow in this order: moves completing a line of four (wins), moves filling the
+ * hole of an opponent line of four (blocks), the killer moves of the ply (moves that caused a
+ * cutoff in a sibling node), then the rest by history score (cutoffs caused by the move code
+ * anywhere in the tree, weighted by the depth searched below). The
+ * search stops at the deadline, unwinding without storing anything from the cut iteration;
+ * the move returned is the best one of the deepest completed iteration.
+ *
+ * In PVS mode (the default, see MyTools.AB_SEARCH_MODE) only the first move of a node is
+ * searched with the full window. The others are searched with a zero window, which only tells
+ * whether they beat the best score so far, and the few that do are searched again with the
+ * full window. Each iteration also starts with an aspiration window of ASPIRATION_WINDOW
+ * around the score of the previous one, widened from the returned score while the search
+ * fails outside it.
+ *
+ * The search is fail-soft: a node returns the best score it found even when that is outside
+ * its window, so it is a tighter bound to store in the table and to widen the window from.
+ *
+ * Scores are for the player to move. A win scores WIN minus the plies needed to reach it, so
+ * faster wins and slower losses are preferred; evaluations are kept within MAX_EVAL of zero.
+ * Moves giving the same board are searched once.
+ */
+public class AlphaBetaSearch {
+    public static final int WIN = 1_000_000;
+    public static final int MAX_EVAL = WIN / 2;
+    private static final int INFINITY = WIN + 1;
+    private static final int MAX_PLY = PentagoBoardState.MAX_TURNS * 2;
+    // Scores this far from WIN are wins or losses, stored relative to the node in the table
+    private static final int WIN_BOUND = WIN - MAX_PLY;
+    // Move ordering keys, history scores stay below KILLER_ORDER
+    private static final int FIRST_ORDER = Integer.MAX_VALUE;
+    private static final int WIN_ORDER = 1 << 30;
+    private static final int BLOCK_ORDER = 1 << 29;
+    private static final int KILLER_ORDER = 1 << 28;
+    private static final int NUM_KILLERS = 2;
+    // Half width of the first aspiration window, multiplied by ASPIRATION_GROWTH on each failure
+    private static final int ASPIRATION_WINDOW = 256;
+    private static final int ASPIRATION_GROWTH = 4;
+
+    /** Static evaluation of a position where the game is not over, for the player to move. */
+    public interface Evaluator {
+        int evaluate(PentagoBoardState state);
+    }
+
+    private final Evaluator evaluator;
+    private final AlphaBetaTable table;
+    private final boolean pvs = "pvs".equals(AB_SEARCH_MODE);
+
+    // Per ply move lists, and the principal variation found below each ply (triangular table)
+    private final int[][] moves = new int[MAX_PLY + 1][PentagoBoardState.MAX_MOVE_CODES];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[] prevPv = new int[MAX_PLY + 1];
+    private int prevPvLength;
+    private final KeySet childKeys = new KeySet();
+    private final int[][] orderKeys = new int[MAX_PLY + 1][PentagoBoardState.MAX_MOVE_CODES];
+    private final int[][] killers = new int[MAX_PLY + 1][NUM_KILLERS];
+    private final int[] history = new int[PentagoBoardState.MAX_MOVE_CODES];
+
+    private Deadline deadline;
+    private boolean aborted;
+    private long nodes;
+    private int completedDepth;
+    private int score;
+
+    public AlphaBetaSearch(int tableCapacity, Evaluator evaluator) {
+        this(new AlphaBetaTable(tableCapacity), evaluator);
+    }
+
+    /** Search using a table that may be shared with other searches, see LazySmpSearch. */
+    public AlphaBetaSearch(AlphaBetaTable table, Evaluator evaluator) {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /** Nodes visited by the last search. */
+    public long getNodes() { return nodes; }
+
+    /** Depth of the deepest iteration the last search completed. */
+    public int getCompletedDepth() { return completedDepth; }
+
+    /** Score of the move returned by the last search, for the player to move. */
+    public int getScore() { return score; }
+
+    /**
+     * Searches deeper and deeper until endTime, the end of the game, or a proven result.
+     * @param endTime a System.currentTimeMillis() time
+     * @return the move code of the best move, or -1 if the game is over
+     */
+    public int search(PentagoBoardState rootState, long endTime) {
+        return search(rootState, Deadline.at(endTime), MAX_PLY);
+    }
+
+    /**
+     * Same as search(rootState, endTime), stopping after maxDepth plies at most.
+     */
+    public int search(PentagoBoardState rootState, Deadline deadline, int maxDepth) {
+        table.newSearch();
+        return iterate(rootState, deadline, 1, maxDepth);
+    }
+
+    /**
+     * The iterative deepening loop of search, starting at startDepth and leaving the table's
+     * generation alone, so that several searches can run it at once on one table.
+     */
+    int iterate(PentagoBoardState rootState, Deadline deadline, int startDepth, int maxDepth) {
+        PentagoBoardState state = (PentagoBoardState) rootState.clone();
+        this.deadline = deadline;
+        aborted = false;
+        nodes = 0;
+        completedDepth = 0;
+        prevPvLength = 0;
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, -1);
+        }
+        ageHistory(); // Keep what earlier moves learnt, but let this search take over
+        int bestMove = -1;
+        if (state.getWinner() != Board.NOBODY) return bestMove;
+
+        int pliesLeft = MAX_PLY - state.getTurnNumber() * 2 - state.getTurnPlayer();
+        for (int depth = startDepth; depth <= Math.min(maxDepth, pliesLeft); depth++) {
+            int iterationScore = pvs && completedDepth > 0
+                    ? aspirationSearch(state, depth, score)
+                    : negamax(state, depth, 0, -INFINITY, INFINITY, true);
+            if (aborted) break;
+            completedDepth = depth;
+            score = iterationScore;
+            bestMove = pv[0][0];
+            prevPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, prevPv, 0, prevPvLength);
+            if (Math.abs(iterationScore) > WIN_BOUND) break; // Proven, deeper cannot change it
+        }
+
+        if (bestMove < 0 && generateMoves(state, moves[0], -1) > 0) {
+            bestMove = moves[0][0]; // Not even one ply completed, any legal move will do
+        }
+        return bestMove;
+    }
+
+    /**
+     * Searches the root with a window around the expected score, widening the side the score
+     * fell out of until it falls inside. The fail-soft score tells how far to widen.
+     */
+    private int aspirationSearch(PentagoBoardState state, int depth, int expected) {
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(-INFINITY, expected - delta);
+        int beta = Math.min(INFINITY, expected + delta);
+        while (true) {
+            int value = negamax(state, depth, 0, alpha, beta, true);
+            if (aborted) return 0;
+            delta = Math.min(INFINITY, delta * ASPIRATION_GROWTH);
+            if (value <= alpha) {
+                alpha = Math.max(-INFINITY, value - delta);
+            } else if (value >= beta) {
+                beta = Math.min(INFINITY, value + delta);
+            } else {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @param onPv whether the moves played from the root so far are the start of the principal
+     *             variation of the previous iteration
+     */
+    private int negamax(PentagoBoardState state, int depth, int ply, int alpha, int beta, boolean onPv) {
+        pvLength[ply] = ply;
+        if (deadline.expired()) {
+            aborted = true;
+            return 0;
+        }
+        nodes++;
+
+        int winner = state.getWinner();
+        if (winner != Board.NOBODY) {
+            if (winner == Board.DRAW) return 0;
+            return winner == state.getTurnPlayer() ? WIN - ply : -(WIN - ply);
+        }
+        if (depth == 0) {
+            return Math.max(-MAX_EVAL, Math.min(MAX_EVAL, evaluator.evaluate(state)));
+        }
+
+        long key = state.getZobristKey();
+        int ttMove = -1;
+        long entry = table.probe(key);
+        if (entry != AlphaBetaTable.MISS) {
+            ttMove = AlphaBetaTable.move(entry);
+            if (ply > 0 && AlphaBetaTable.depth(entry) >= depth) {
+                int ttScore = fromTable(AlphaBetaTable.score(entry), ply);
+                int bound = AlphaBetaTable.bound(entry);
+                if (bound == AlphaBetaTable.EXACT
+                        || (bound == AlphaBetaTable.LOWER && ttScore >= beta)
+                        || (bound == AlphaBetaTable.UPPER && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+        }
+
+        // On the previous principal variation, its move goes first, else the table's
+        boolean followPv = onPv && ply < prevPvLength;
+        int firstMove = followPv ? prevPv[ply] : ttMove;
+        int[] list = moves[ply];
+        int[] keys = orderKeys[ply];
+        int numMoves = generateMoves(state, list, firstMove);
+        scoreMoves(state, list, keys, numMoves, ply, firstMove);
+
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < numMoves; i++) {
+            pickNext(list, keys, i, numMoves);
+            int move = list[i];
+            state.applyMove(move);
+            int value;
+            if (i == 0 || !pvs) {
+                value = -negamax(state, depth - 1, ply + 1, -beta, -alpha, followPv && move == prevPv[ply]);
+            } else {
+                value = -negamax(state, depth - 1, ply + 1, -alpha - 1, -alpha, false);
+                // Beat alpha: search again for the exact score, unless the window was null anyway
+                if (value > alpha && value < beta && !aborted) {
+                    value = -negamax(state, depth - 1, ply + 1, -beta, -alpha, false);
+                }
+            }
+            state.undoMove();
+            if (aborted) return 0;
+
+            if (value > best) {
+                best = value;
+                bestMove = move;
+                if (value > alpha) {
+                    alpha = value;
+                    pv[ply][ply] = move;
+                    System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+                    pvLength[ply] = pvLength[ply + 1];
+                }
+            }
+            if (alpha >= beta) {
+                if (keys[i] < BLOCK_ORDER) {
+                    addCutoff(move, ply, depth);
+                }
+                break;
+            }
+        }
+
+        int bound = best <= alphaOrig ? AlphaBetaTable.UPPER
+                : best >= beta ? AlphaBetaTable.LOWER : AlphaBetaTable.EXACT;
+        table.store(key, depth, bound, toTable(best, ply), bestMove);
+        return best;
+    }
+
+    /**
+     * Writes the legal moves into list, one per resulting board, with firstMove (if legal) at
+     * the front.
+     * @return the number of moves
+     */
+    private int generateMoves(PentagoBoardState state, int[] list, int firstMove) {
+        int numLegal = state.getAllLegalMoveCodes(list);
+        childKeys.clear();
+        int numMoves = 0;
+        for (int i = 0; i < numLegal; i++) {
+            if (childKeys.add(state.getZobristKeyAfter(list[i]))) {
+                list[numMoves++] = list[i];
+            }
+        }
+        for (int i = 0; i < numMoves; i++) {
+            if (list[i] == firstMove) {
+                list[i] = list[0];
+                list[0] = firstMove;
+                break;
+            }
+        }
+        return numMoves;
+    }
+
+    /* ======== Move Ordering ======== */
+
+    private void scoreMoves(PentagoBoardState state, int[] list, int[] keys, int numMoves, int ply, int firstMove) {
+        int player = state.getTurnPlayer();
+        long mine = state.getPieces(player);
+        long theirs = state.getPieces(1 - player);
+        long winCells = lineHoles(mine, theirs);
+        long blockCells = lineHoles(theirs, mine);
+        int[] plyKillers = killers[ply];
+
+        for (int i = 0; i < numMoves; i++) {
+            int move = list[i];
+            long cell = 1L << PentagoMove.cellOf(move);
+            if (move == firstMove) {
+                keys[i] = FIRST_ORDER;
+            } else if ((winCells & cell) != 0) {
+                keys[i] = WIN_ORDER;
+            } else if ((blockCells & cell) != 0) {
+                keys[i] = BLOCK_ORDER;
+            } else if (move == plyKillers[0]) {
+                keys[i] = KILLER_ORDER + 1;
+            } else if (move == plyKillers[1]) {
+                keys[i] = KILLER_ORDER;
+            } else {
+                keys[i] = history[move];
+            }
+        }
+    }
+
+    /**
+     * Moves the best remaining move to index i. Done one move at a time, since a cutoff often
+     * comes before the list is through.
+     */
+    private static void pickNext(int[] list, int[] keys, int i, int numMoves) {
+        int best = i;
+        for (int j = i + 1; j < numMoves; j++) {
+            if (keys[j] > keys[best]) best = j;
+        }
+        if (best != i) {
+            int move = list[i];
+            list[i] = list[best];
+            list[best] = move;
+            int key = keys[i];
+            keys[i] = keys[best];
+            keys[best] = key;
+        }
+    }
+
+    /**
+     * Cells completing a line holding four pieces and none of other. The twist can still break
+     * the line, so this is only used for ordering.
+     */
+    private static long lineHoles(long pieces, long other) {
+        long holes = 0;
+        for (int i = 0; i < PentagoWinLines.NUM_LINES; i++) {
+            long line = PentagoWinLines.lineMask(i);
+            if ((line & other) == 0 && Long.bitCount(line & pieces) == PentagoWinLines.WIN_LENGTH - 1) {
+                holes |= line & ~pieces;
+            }
+        }
+        return holes;
+    }
+
+    /** Records a quiet move that caused a cutoff as a killer of the ply and in the history. */
+    private void addCutoff(int move, int ply, int depth) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        history[move] += depth * depth;
+        if (history[move] >= KILLER_ORDER) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score > WIN_BOUND) return score + ply;
+        if (score < -WIN_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_BOUND) return score - ply;
+        if (score < -WIN_BOUND) return score + ply;
+        return score;
+    }
+}
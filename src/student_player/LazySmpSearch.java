@@ -0,0 +1,80 @@
+package student_player;
+
+import boardgame.Deadline;
+import pentago_twist.PentagoBoardState;
+import student_player.AlphaBetaSearch.Evaluator;
+import student_player.MyTools.*;
+
+import static student_player.MyTools.*;
+
+/**
+ * Alpha-beta on several threads, Lazy SMP style: every thread runs its own iterative deepening
+ * AlphaBetaSearch from the root, and the only thing they share is the transposition table.
+ *
+ * Threads do not split the tree between them. They drift apart on their own (every other
+ * helper starts one ply deeper, and timing does the rest), and the bounds and best moves one
+ * stores let the others cut or order their own nodes sooner, so the main search completes
+ * its iterations faster than it would alone. The move is the one of the main search, run on
+ * the calling thread; the helpers are stopped as soon as it returns.
+ */
+public class LazySmpSearch {
+
+    private final AlphaBetaTable table;
+    private final AlphaBetaSearch[] searches;
+    private final Deadline[] deadlines;
+
+    public LazySmpSearch(int tableCapacity, int numThreads, Evaluator evaluator) {
+        this.table = new AlphaBetaTable(tableCapacity);
+        this.searches = new AlphaBetaSearch[Math.max(1, numThreads)];
+        this.deadlines = new Deadline[searches.length];
+        for (int i = 0; i < searches.length; i++) {
+            searches[i] = new AlphaBetaSearch(table, evaluator);
+        }
+    }
+
+    /** Nodes visited by all threads during the last search. */
+    public long getNodes() {
+        long nodes = 0;
+        for (AlphaBetaSearch search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /** Depth of the deepest iteration the main search completed. */
+    public int getCompletedDepth() { return searches[0].getCompletedDepth(); }
+
+    /** Score of the move returned by the last search, for the player to move. */
+    public int getScore() { return searches[0].getScore(); }
+
+    /**
+     * Searches on all threads until endTime, the end of the game, or a proven result.
+     * @param endTime a System.currentTimeMillis() time
+     * @return the move code of the best move, or -1 if the game is over
+     */
+    public int search(PentagoBoardState rootState, long endTime) {
+        table.newSearch();
+
+        Thread[] threads = new Thread[searches.length - 1];
+        for (int i = 0; i < threads.length; i++) {
+            AlphaBetaSearch helper = searches[i + 1];
+            Deadline deadline = deadlines[i + 1] = newDeadline(endTime);
+            int startDepth = 1 + ((i + 1) & 1);
+            threads[i] = new Thread(() -> helper.iterate(rootState, deadline, startDepth, Integer.MAX_VALUE),
+                    "ab-" + (i + 1));
+            threads[i].start();
+        }
+        int move = searches[0].iterate(rootState, newDeadline(endTime), 1, Integer.MAX_VALUE);
+
+        // The main search is done, whatever the helpers are still looking at is of no use
+        for (int i = 0; i < threads.length; i++) {
+            deadlines[i + 1].stop();
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return move;
+    }
+}
@@ -0,0 +1,251 @@
+package student_player;
+
+import boardgame.Board;
+import boardgame.Deadline;
+import boardgame.TimeManager;
+import pentago_twist.PentagoBoardState;
+import student_player.MyTools.*;
+
+import java.util.Random;
+
+import static student_player.MyTools.*;
+
+/**
+ * One MCTS search over its own tree. The search keeps no static state, so several searches
+ * can run side by side on different threads.
+ */
+public class MonteCarloTreeSearch {
+
+    private final Tree tree;
+    // Off when the caller merges several trees and decides for them, see RootParallelSearch
+    private final boolean checkSettled;
+    private final Random rand = new Random();
+    private int curPlayer;
+    // Set from another thread to end search() before its end time
+    private volatile boolean stopRequested;
+    private long iterations;
+
+    // Scratch buffers for expansion and playouts
+    private final int[] legalMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+    private final int[] childMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+    private final KeySet childKeys = new KeySet();
+
+    public MonteCarloTreeSearch(int capacity) {
+        this(capacity, true);
+    }
+
+    /**
+     * @param checkSettled whether search() ends by itself once the move is settled
+     */
+    public MonteCarloTreeSearch(int capacity, boolean checkSettled) {
+        this.tree = new Tree(capacity);
+        this.checkSettled = checkSettled;
+    }
+
+    public Tree getTree() { return tree; }
+
+    /** Iterations run by the last search(). */
+    public long getIterations() { return iterations; }
+
+    /**
+     * Moves the root to the given state, keeping the matching subtree when the state is the
+     * current root or one of its children. Also clears any earlier stop request.
+     */
+    public void setRoot(PentagoBoardState boardState) {
+        stopRequested = false;
+        if (tree.rootState != null && tree.rootState.equals(boardState)) {
+            return;
+        }
+        if (tree.rootState == null || !tree.pruneTree(boardState)) {
+            tree.reset(boardState);
+        }
+    }
+
+    /**
+     * Moves the root to its child reached by the given move code, or starts a new tree there
+     * if that child was never created.
+     */
+    public void advance(int moveCode) {
+        int child = tree.getChild(Tree.ROOT, moveCode);
+        if (child != Tree.NONE) {
+            tree.pruneTree(child);
+        } else {
+            PentagoBoardState next = (PentagoBoardState) tree.rootState.clone();
+            next.processMove(moveCode);
+            tree.reset(next);
+        }
+    }
+
+    /**
+     * Makes a running search() return after its current iteration.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /* ======== Monte Carlo Search Tree Implementation ======== */
+
+    /**
+     * Grows the tree until endTime or until stop() is called.
+     * @param player the player whose playout wins are counted, normally the one to move at the
+     *               root, but the other one while pondering
+     */
+    public void search(long endTime, int player) {
+        // set curPlayer
+        curPlayer = player;
+
+        // Working copy of the root state, moves are played and taken back on it
+        PentagoBoardState state = (PentagoBoardState) tree.rootState.clone();
+        long startTime = System.currentTimeMillis();
+        iterations = 0;
+        Deadline deadline = newDeadline(endTime);
+
+        // Once the root is proven, more iterations cannot change the move
+        while (!stopRequested && tree.proof[Tree.ROOT] == Tree.UNPROVEN && !deadline.expired()) {
+            /* SELECTION : get most promising Node using UCT policy */
+            int promisingNode = selection(state);
+
+            /* EXPANSION : create the children of the selected node */
+            if (!state.gameOver() && tree.childCount[promisingNode] == 0) {
+                expansion(promisingNode, state);
+            }
+
+            /* SIMULATION : select child and simulate to terminal node */
+            int nodeToExplore = promisingNode;
+            if (tree.childCount[promisingNode] > 0) {
+                nodeToExplore = tree.getRandomChild(promisingNode, rand);
+                state.applyMove(tree.move[nodeToExplore]);
+            }
+            int playoutWins = simulation(nodeToExplore, state);
+
+            /* BACK PROPAGATION : update the win and visit counts for nodes
+                                 on the path to the current node, and spread proofs */
+            backPropagation(nodeToExplore, state.getTurnPlayer(), PLAYOUTS_PER_LEAF, playoutWins);
+
+            while (state.getUndoDepth() > 0) {
+                state.undoMove();
+            }
+
+            if (++iterations % SETTLED_CHECK_INTERVAL == 0 && checkSettled
+                    && isSettled(iterations, startTime, endTime)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Whether searching on is unlikely to change the move: either the root child with the most
+     * wins is too far ahead to be caught before endTime, or its win rate is confidently above
+     * the win rate of every other child. Only the children Tree.getChildWithMaxScore can pick
+     * are compared: a proven win settles the move at once, and proven losses are left out.
+     */
+    private boolean isSettled(long iterations, long startTime, long endTime) {
+        int turnPlayer = tree.rootState.getTurnPlayer();
+        if (curPlayer != turnPlayer) return false; // Pondering, not our move
+        int first = tree.firstChild[Tree.ROOT];
+        int end = first + tree.childCount[Tree.ROOT];
+        int best = Tree.NONE;
+        float second = Float.NEGATIVE_INFINITY;
+        for (int c = first; c < end; c++) {
+            if (tree.proof[c] == turnPlayer) return true;
+            if (tree.proof[c] == 1 - turnPlayer) continue;
+            if (best == Tree.NONE || tree.winCount[c] > tree.winCount[best]) {
+                if (best != Tree.NONE) second = tree.winCount[best];
+                best = c;
+            } else if (tree.winCount[c] > second) {
+                second = tree.winCount[c];
+            }
+        }
+        if (best == Tree.NONE) return tree.childCount[Tree.ROOT] > 0; // Every move loses
+        long now = System.currentTimeMillis();
+        if (TimeManager.cannotBeOvertaken(tree.winCount[best], second, PLAYOUTS_PER_LEAF, iterations,
+                now - startTime, endTime - now)) {
+            return true;
+        }
+        for (int c = first; c < end; c++) {
+            if (c != best && tree.proof[c] != 1 - turnPlayer
+                    && !TimeManager.clearlyBetter(tree.winCount[best], tree.visitCount[best],
+                            tree.winCount[c], tree.visitCount[c])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks down the tree with UCT, playing the moves of the path on state. Proven children
+     * are never entered; an unproven node always has an unproven child.
+     */
+    private int selection(PentagoBoardState state) {
+        int node = Tree.ROOT;
+        while (tree.childCount[node] > 0) {
+            int child = findBestNodeWithUCT(tree, node);
+            if (child == Tree.NONE) break;
+            node = child;
+            state.applyMove(tree.move[node]);
+        }
+        return node;
+    }
+
+    private void expansion(int node, PentagoBoardState state) {
+        int numMoves = state.getAllLegalMoveCodes(legalMoves);
+        // Many moves give the same board (e.g. twisting an empty quadrant), keep one child per board
+        childKeys.clear();
+        int numChildren = 0;
+
+        for (int i = 0; i < numMoves; i++) {
+            state.applyMove(legalMoves[i]);
+            if (childKeys.add(state.getZobristKey())) {
+                childMoves[numChildren++] = legalMoves[i];
+            }
+            state.undoMove();
+        }
+        tree.addChildren(node, childMoves, numChildren);
+    }
+
+    /**
+     * Runs PLAYOUTS_PER_LEAF random playouts from the state of node, taking each one back
+     * before the next. A node where the game is over is proven instead.
+     * @return the number of playouts won by curPlayer
+     */
+    private int simulation(int node, PentagoBoardState state) {
+        if (state.getWinner() != Board.NOBODY) {
+            tree.setProof(node, state.getWinner());
+            return state.getWinner() == curPlayer ? PLAYOUTS_PER_LEAF : 0;
+        }
+        // if game is not over simulate to the end by selecting random moves
+        int leafDepth = state.getUndoDepth();
+        int wins = 0;
+        for (int i = 0; i < PLAYOUTS_PER_LEAF; i++) {
+            while (state.getWinner() == Board.NOBODY) {
+                state.applyMove(state.randomLegalMoveCode(rand));
+            }
+            if (state.getWinner() == curPlayer) {
+                wins++;
+            }
+            while (state.getUndoDepth() > leafDepth) {
+                state.undoMove();
+            }
+        }
+        return wins;
+    }
+
+    /**
+     * @param leafTurn the player to move at leafNode
+     */
+    private void backPropagation(int leafNode, int leafTurn, int visits, int wins) {
+        int tmp = leafNode;
+        int turn = leafTurn;
+        boolean proving = tree.proof[leafNode] != Tree.UNPROVEN;
+
+        while (tmp >= 0) {
+            tree.visitCount[tmp] += visits;
+            tree.winCount[tmp] += wins;
+            tmp = tree.parent[tmp];
+            turn = 1 - turn; // Players alternate on every move
+            if (proving && tmp >= 0) {
+                proving = tree.updateProof(tmp, turn);
+            }
+        }
+    }
+}
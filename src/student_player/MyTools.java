@@ -1,96 +1,671 @@
 package student_player;
 
+import boardgame.Board;
+import boardgame.Deadline;
 import pentago_twist.PentagoBoardState;
-import pentago_twist.PentagoBoardState.Piece;
-import pentago_twist.PentagoMove;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class MyTools {
-    public static final long FIRST_MOVE_TIME_LIMIT = 10000;
-    public static final long MOVE_TIME_LIMIT = 1950;
+    // Shares of the move timeout used by chooseMove, see timeWeight
+    public static final double FIRST_MOVE_TIME_SHARE = 1 / 3.0;
+    public static final double EDGE_TIME_SHARE = 0.75;
+    public static final int MIDGAME_START = 2;
+    public static final int MIDGAME_END = 12;
+    // Iterations between two checks of whether the best root child can still be overtaken
+    public static final int SETTLED_CHECK_INTERVAL = 1024;
+    // How often RootParallelSearch checks the merged root statistics, in milliseconds
+    public static final long SETTLED_POLL_MILLIS = 10;
     public static final double EXPLORATION_PARAMETER = Math.sqrt(2) / 7;
+    // About 20 bytes per node (plus 4 for re-rooting), so 5M nodes fit in the 520 MB heap
+    public static final int NODE_CAPACITY = 5_000_000;
+    // Number of search threads, override with -Dstudent.threads=N
+    public static final int NUM_THREADS = Integer.getInteger("student.threads", Runtime.getRuntime().availableProcessors());
+    // "root": one tree per thread (NODE_CAPACITY / NUM_THREADS nodes each), merged at the root.
+    // "tree": all threads share one tree.
+    // "dag": all threads share one node per position, in a table of TABLE_CAPACITY slots.
+    // Override with -Dstudent.search=tree
+    public static final String SEARCH_MODE = System.getProperty("student.search", "root");
+    // 16 bytes per slot, must be a power of two
+    public static final int TABLE_CAPACITY = 1 << 22;
+    // Entries of the alpha-beta transposition table, 8 bytes each, must be a power of two
+    public static final int AB_TABLE_CAPACITY = 1 << 20;
+    // "pvs": alpha-beta searches later moves with a zero window and uses aspiration windows.
+    // "full": every move gets the full window. Override with -Dstudent.ab=full
+    public static final String AB_SEARCH_MODE = System.getProperty("student.ab", "pvs");
+    // Visits added to a node while a thread is below it, so that other threads pick other branches
+    public static final int VIRTUAL_LOSS = 1;
+    // Random playouts run from each selected leaf, backed up together as one update.
+    // Override with -Dstudent.playouts=K
+    public static final int PLAYOUTS_PER_LEAF = Math.max(1, Integer.getInteger("student.playouts", 1));
+    // Let a timer thread end searches at their deadline instead of reading the clock from the
+    // search loops. Enable with -Dstudent.timer=true
+    public static final boolean TIMER_THREAD = Boolean.getBoolean("student.timer");
+    // Print the iterations of every search, to compare thread counts and search modes on a
+    // given machine. Enable with -Dstudent.stats=true
+    public static final boolean PRINT_STATS = Boolean.getBoolean("student.stats");
+
+
+    /* ======== Time Management ======== */
+
+    /**
+     * Share of the usable move time to spend on a position. The first move has the long
+     * first move timeout, but the tree fills up long before it ends, so only a third is used.
+     * Early and late moves get less than the midgame: the opening is mostly symmetric, and
+     * endgame positions are quickly proven or settled.
+     */
+    public static double timeWeight(PentagoBoardState state) {
+        int turn = state.getTurnNumber();
+        if (turn == 0) return FIRST_MOVE_TIME_SHARE;
+        if (turn < MIDGAME_START || turn > MIDGAME_END) return EDGE_TIME_SHARE;
+        return 1;
+    }
+
+    /**
+     * Deadline for one search thread, see boardgame.Deadline.
+     * @param endTime a System.currentTimeMillis() time, Long.MAX_VALUE for none
+     */
+    public static Deadline newDeadline(long endTime) {
+        Deadline deadline = Deadline.at(endTime);
+        return TIMER_THREAD ? deadline.startTimer() : deadline;
+    }
+
+    /* ======== MCTS Tree ======== */
+
+    /**
+     * MCTS tree stored as parallel arrays indexed by node id, instead of one object per node.
+     *
+     * The children of a node are allocated as one contiguous block, so a node only needs the
+     * index of its first child and the number of children. Nodes store the packed move code
+     * (see PentagoMove.encode) that leads to them rather than a board: the state of a node is
+     * rebuilt by playing the moves on the path from the root, starting from rootState.
+     *
+     * Nodes whose game result is known for sure carry it in proof (MCTS-Solver): the winning
+     * colour, PROVEN_DRAW, or UNPROVEN. Terminal nodes are proven when first simulated, and
+     * proofs spread to their ancestors through updateProof.
+     */
+    public static class Tree {
+        public static final int ROOT = 0;
+        static final int NONE = -1;
+        public static final byte UNPROVEN = -1;
+        public static final byte PROVEN_DRAW = 2;
+
+        final int capacity;
+        final int[] parent;
+        final int[] firstChild;
+        final short[] childCount;
+        final short[] move;
+        final int[] visitCount;
+        final float[] winCount;
+        final byte[] proof;
+        private final int[] forward; // Scratch space for re-rooting
+        int size;
+        PentagoBoardState rootState;
+
+        public Tree(int capacity) {
+            this.capacity = capacity;
+            this.parent = new int[capacity];
+            this.firstChild = new int[capacity];
+            this.childCount = new short[capacity];
+            this.move = new short[capacity];
+            this.visitCount = new int[capacity];
+            this.winCount = new float[capacity];
+            this.proof = new byte[capacity];
+            this.forward = new int[capacity];
+        }
+
+        /**
+         * Drops all nodes and starts a new tree rooted at the given state.
+         */
+        public void reset(PentagoBoardState state) {
+            size = 1;
+            initNode(ROOT, NONE, NONE);
+            rootState = (PentagoBoardState) state.clone();
+        }
+
+        private void initNode(int node, int parentNode, int moveCode) {
+            parent[node] = parentNode;
+            firstChild[node] = NONE;
+            childCount[node] = 0;
+            move[node] = (short) moveCode;
+            visitCount[node] = 0;
+            winCount[node] = 0;
+            proof[node] = UNPROVEN;
+        }
+
+        /**
+         * Creates one child per move code as a contiguous block.
+         * @return false if the tree is full, in which case the node stays a leaf
+         */
+        public boolean addChildren(int node, int[] moves, int n) {
+            if (n == 0 || size + n > capacity) return false;
+            for (int i = 0; i < n; i++) {
+                initNode(size + i, node, moves[i]);
+            }
+            firstChild[node] = size;
+            childCount[node] = (short) n;
+            size += n;
+            return true;
+        }
+
+        public boolean isFull() { return size == capacity; }
+
+        // ----- Getters ----- //
+
+        public int getRandomChild(int node, Random rand) {
+            if (childCount[node] == 0) return NONE;
+            return firstChild[node] + rand.nextInt(childCount[node]);
+        }
+
+        public int getChild(int node, int moveCode) {
+            for (int c = firstChild[node]; c >= 0 && c < firstChild[node] + childCount[node]; c++) {
+                if (move[c] == moveCode) return c;
+            }
+            return NONE;
+        }
+
+        /**
+         * Best child for the player to move at the node: a proven win if there is one,
+         * otherwise the child with the most wins among those not proven lost.
+         */
+        public int getChildWithMaxScore(int node, int turnPlayer) {
+            int best = NONE;
+            for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+                if (proof[c] == turnPlayer) return c;
+                if (proof[c] == 1 - turnPlayer) continue;
+                if (best == NONE || winCount[c] > winCount[best]) best = c;
+            }
+            if (best != NONE) return best;
+            // Every move loses, play the one that held out best in the playouts
+            for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+                if (best == NONE || winCount[c] > winCount[best]) best = c;
+            }
+            return best;
+        }
 
-    private static final Random rand = new Random();
+        // ----- MCTS-Solver ----- //
 
+        /**
+         * Marks a terminal node with the winner of its position (a colour or Board.DRAW).
+         */
+        public void setProof(int node, int winner) {
+            proof[node] = winner == Board.DRAW ? PROVEN_DRAW : (byte) winner;
+        }
 
-    /* ======== MCTS Node ======== */
+        /**
+         * Tries to prove a node from its children, after one of them was proven. The player
+         * to move at the node wins if any child is a win for them. Otherwise the node is only
+         * proven once all its children are, and gets the best of their results for that player.
+         * @return true if the node is now proven
+         */
+        public boolean updateProof(int node, int turnPlayer) {
+            boolean allProven = true;
+            boolean anyDraw = false;
+            for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+                if (proof[c] == turnPlayer) {
+                    proof[node] = (byte) turnPlayer;
+                    return true;
+                }
+                if (proof[c] == UNPROVEN) {
+                    allProven = false;
+                } else if (proof[c] == PROVEN_DRAW) {
+                    anyDraw = true;
+                }
+            }
+            if (!allProven) return false;
+            proof[node] = anyDraw ? PROVEN_DRAW : (byte) (1 - turnPlayer);
+            return true;
+        }
 
-    public static class Node {
-        PentagoBoardState state;
-        PentagoMove move;
-        Node parent;
-        List<Node> children;
-        int visitCount;
-        int winCount;
+        // ----- Tree reuse ----- //
+
+        /**
+         * Re-roots the tree at the child of the root that leads to the given state.
+         * @return false if no child matches, e.g. because the root was never expanded
+         */
+        public boolean pruneTree(PentagoBoardState state) {
+            for (int c = firstChild[ROOT]; c >= 0 && c < firstChild[ROOT] + childCount[ROOT]; c++) {
+                rootState.applyMove(move[c]);
+                boolean found = rootState.equals(state);
+                rootState.undoMove();
+                if (found) {
+                    pruneTree(c);
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        public Node(PentagoMove move, PentagoBoardState state, Node parent) {
-            this.state = state;
-            this.move = move;
+        /**
+         * Re-roots the tree at a child of the root and frees everything outside its subtree.
+         *
+         * A block of children is always allocated after its parent, so a node's index is larger
+         * than its parent's. The kept nodes can then be slid down to the front of the arrays in
+         * index order without overwriting a node that has not been moved yet.
+         */
+        public void pruneTree(int node) {
+            rootState.processMove(move[node]);
+
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                boolean keep = i == node || (i > node && parent[i] != NONE && forward[parent[i]] != NONE);
+                forward[i] = keep ? next++ : NONE;
+            }
+            for (int i = node; i < size; i++) {
+                int j = forward[i];
+                if (j == NONE) continue;
+                parent[j] = i == node ? NONE : forward[parent[i]];
+                firstChild[j] = childCount[i] == 0 ? NONE : forward[firstChild[i]];
+                childCount[j] = childCount[i];
+                move[j] = i == node ? NONE : move[i];
+                visitCount[j] = visitCount[i];
+                winCount[j] = winCount[i];
+                proof[j] = proof[i];
+            }
+            size = next;
+        }
+    }
 
-            this.parent = parent;
-            this.children = new ArrayList<>();
+    /* ======== Shared MCTS Tree ======== */
+
+    /**
+     * Same layout as Tree, but safe to grow from several threads at once.
+     *
+     * Visit and win counts are atomic. A node is expanded by exactly one thread: it claims the
+     * node by moving firstChild from NONE to EXPANDING with a CAS, fills in the child block,
+     * and then publishes it by writing firstChild. Readers that see a child index through
+     * firstChild therefore also see the child count and the child nodes. Wins are whole
+     * playout wins, so they are kept as ints.
+     *
+     * Proofs work as in Tree. They are written without synchronization: a proof never
+     * changes once set and every thread would compute the same one, so a thread that reads
+     * a stale UNPROVEN only does some useless work.
+     */
+    public static class ConcurrentTree {
+        public static final int ROOT = 0;
+        static final int NONE = -1;
+        static final int EXPANDING = -2;
+
+        final int capacity;
+        final int[] parent;
+        final AtomicIntegerArray firstChild;
+        final short[] childCount;
+        final short[] move;
+        final AtomicIntegerArray visitCount;
+        final AtomicIntegerArray winCount;
+        final byte[] proof;
+        private final int[] forward; // Scratch space for re-rooting
+        private final AtomicInteger size = new AtomicInteger();
+        PentagoBoardState rootState;
+
+        public ConcurrentTree(int capacity) {
+            this.capacity = capacity;
+            this.parent = new int[capacity];
+            this.firstChild = new AtomicIntegerArray(capacity);
+            this.childCount = new short[capacity];
+            this.move = new short[capacity];
+            this.visitCount = new AtomicIntegerArray(capacity);
+            this.winCount = new AtomicIntegerArray(capacity);
+            this.proof = new byte[capacity];
+            this.forward = new int[capacity];
+        }
 
-            this.visitCount = 0;
-            this.winCount = 0;
+        /**
+         * Drops all nodes and starts a new tree rooted at the given state. Not thread safe.
+         */
+        public void reset(PentagoBoardState state) {
+            size.set(1);
+            initNode(ROOT, NONE, NONE);
+            rootState = (PentagoBoardState) state.clone();
         }
 
-        public Node() {
-            this.state = null;
-            this.move = null;
+        private void initNode(int node, int parentNode, int moveCode) {
+            parent[node] = parentNode;
+            childCount[node] = 0;
+            move[node] = (short) moveCode;
+            visitCount.set(node, 0);
+            winCount.set(node, 0);
+            proof[node] = Tree.UNPROVEN;
+            firstChild.set(node, NONE);
+        }
 
-            this.parent = null;
-            this.children = new ArrayList<>();
+        /**
+         * @return true if the caller is now the only thread allowed to expand the node; false
+         *         once the tree may be too full for its children, so that leaves of a full tree
+         *         are simulated without generating moves that addChildren would throw away
+         */
+        public boolean claimExpansion(int node) {
+            if (size.get() + PentagoBoardState.MAX_MOVE_CODES > capacity) return false;
+            return firstChild.compareAndSet(node, NONE, EXPANDING);
+        }
 
-            this.visitCount = 0;
-            this.winCount = 0;
+        /**
+         * Creates and publishes the children of a node claimed with claimExpansion.
+         * @return false if the tree is full, in which case the node stays a leaf
+         */
+        public boolean addChildren(int node, int[] moves, int n) {
+            int start;
+            do {
+                start = size.get();
+                if (n == 0 || start + n > capacity) {
+                    firstChild.set(node, NONE);
+                    return false;
+                }
+            } while (!size.compareAndSet(start, start + n));
+            for (int i = 0; i < n; i++) {
+                initNode(start + i, node, moves[i]);
+            }
+            childCount[node] = (short) n;
+            firstChild.set(node, start); // Publishes the block
+            return true;
         }
 
+        public int size() { return size.get(); }
+
         // ----- Getters ----- //
 
-        public Node getRandomChild(){
-            if (children.isEmpty()) return null;
-            return children.get(rand.nextInt(children.size()));
+        public int getRandomChild(int node, Random rand) {
+            int first = firstChild.get(node);
+            if (first < 0) return NONE;
+            return first + rand.nextInt(childCount[node]);
         }
 
-        public Node getChildWithMaxScore() {
-            return Collections.max(this.children, Comparator.comparing(c -> c.winCount));
+        public int getChild(int node, int moveCode) {
+            int first = firstChild.get(node);
+            for (int c = first; c >= 0 && c < first + childCount[node]; c++) {
+                if (move[c] == moveCode) return c;
+            }
+            return NONE;
         }
 
-        public Node getChildWithState(PentagoBoardState state) {
-            for (int i = 0; i < children.size(); i++) {
-                if (equalsBoard(children.get(i).state, state)){
-                    return children.get(i);
+        /**
+         * See Tree.getChildWithMaxScore.
+         */
+        public int getChildWithMaxScore(int node, int turnPlayer) {
+            int first = firstChild.get(node);
+            int best = NONE;
+            for (int c = first; c < first + childCount[node]; c++) {
+                if (proof[c] == turnPlayer) return c;
+                if (proof[c] == 1 - turnPlayer) continue;
+                if (best == NONE || winCount.get(c) > winCount.get(best)) best = c;
+            }
+            if (best != NONE) return best;
+            for (int c = first; c < first + childCount[node]; c++) {
+                if (best == NONE || winCount.get(c) > winCount.get(best)) best = c;
+            }
+            return best;
+        }
+
+        // ----- MCTS-Solver ----- //
+
+        public void setProof(int node, int winner) {
+            proof[node] = winner == Board.DRAW ? Tree.PROVEN_DRAW : (byte) winner;
+        }
+
+        /**
+         * See Tree.updateProof. Only called on nodes whose children are published.
+         */
+        public boolean updateProof(int node, int turnPlayer) {
+            int first = firstChild.get(node);
+            boolean allProven = true;
+            boolean anyDraw = false;
+            for (int c = first; c < first + childCount[node]; c++) {
+                if (proof[c] == turnPlayer) {
+                    proof[node] = (byte) turnPlayer;
+                    return true;
+                }
+                if (proof[c] == Tree.UNPROVEN) {
+                    allProven = false;
+                } else if (proof[c] == Tree.PROVEN_DRAW) {
+                    anyDraw = true;
+                }
+            }
+            if (!allProven) return false;
+            proof[node] = anyDraw ? Tree.PROVEN_DRAW : (byte) (1 - turnPlayer);
+            return true;
+        }
+
+        // ----- Tree reuse, only while no search is running ----- //
+
+        /**
+         * Re-roots the tree at the child of the root that leads to the given state.
+         * @return false if no child matches
+         */
+        public boolean pruneTree(PentagoBoardState state) {
+            int first = firstChild.get(ROOT);
+            for (int c = first; c >= 0 && c < first + childCount[ROOT]; c++) {
+                rootState.applyMove(move[c]);
+                boolean found = rootState.equals(state);
+                rootState.undoMove();
+                if (found) {
+                    pruneTree(c);
+                    return true;
                 }
             }
+            return false;
+        }
 
-            return null;
+        /**
+         * Re-roots the tree at a child of the root, see Tree.pruneTree(int).
+         */
+        public void pruneTree(int node) {
+            rootState.processMove(move[node]);
+
+            int oldSize = size.get();
+            int next = 0;
+            for (int i = 0; i < oldSize; i++) {
+                boolean keep = i == node || (i > node && parent[i] != NONE && forward[parent[i]] != NONE);
+                forward[i] = keep ? next++ : NONE;
+            }
+            for (int i = node; i < oldSize; i++) {
+                int j = forward[i];
+                if (j == NONE) continue;
+                int first = firstChild.get(i);
+                parent[j] = i == node ? NONE : forward[parent[i]];
+                firstChild.set(j, first < 0 ? NONE : forward[first]);
+                childCount[j] = first < 0 ? 0 : childCount[i];
+                move[j] = i == node ? NONE : move[i];
+                visitCount.set(j, visitCount.get(i));
+                winCount.set(j, winCount.get(i));
+                proof[j] = proof[i];
+            }
+            size.set(next);
         }
     }
 
-    /* ======== MCTS Tree ======== */
+    /* ======== Transposition Table ======== */
+
+    /**
+     * Node statistics stored by position instead of by path, so that every move order
+     * reaching a position shares one node. Open addressing with linear probing over a fixed
+     * number of slots; slots are claimed with a CAS on the key and never freed until clear(),
+     * so several threads can look up and insert at the same time.
+     *
+     * The wins of a node are counted for the player who moved into it, which makes the
+     * statistics independent of the path and of the root.
+     */
+    public static class TranspositionTable {
+        static final int NONE = -1;
+        private static final long EMPTY = 0;
+
+        final int capacity;
+        private final int mask;
+        private final int maxSize; // Inserts fail past 3/4 full, probes stay short
+        private final AtomicLongArray keys;
+        final AtomicIntegerArray visitCount;
+        final AtomicIntegerArray winCount;
+        private final AtomicInteger size = new AtomicInteger();
+
+        public TranspositionTable(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.maxSize = capacity / 4 * 3;
+            this.keys = new AtomicLongArray(capacity);
+            this.visitCount = new AtomicIntegerArray(capacity);
+            this.winCount = new AtomicIntegerArray(capacity);
+        }
 
-    public static class Tree {
-        Node root;
+        /**
+         * Empties the table. Not thread safe.
+         */
+        public void clear() {
+            for (int i = 0; i < capacity; i++) {
+                keys.set(i, EMPTY);
+                visitCount.set(i, 0);
+                winCount.set(i, 0);
+            }
+            size.set(0);
+        }
+
+        public int size() { return size.get(); }
+
+        /** @return the slot of the position, or NONE if it is not in the table */
+        public int find(long key) {
+            key = nonEmpty(key);
+            for (int i = index(key); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key) return i;
+                if (k == EMPTY) return NONE;
+            }
+        }
+
+        /** @return the slot of the position, added if needed, or NONE if the table is full */
+        public int findOrInsert(long key) {
+            key = nonEmpty(key);
+            for (int i = index(key); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key) return i;
+                if (k != EMPTY) continue;
+                if (size.get() >= maxSize) return NONE;
+                if (keys.compareAndSet(i, EMPTY, key)) {
+                    size.incrementAndGet();
+                    return i;
+                }
+                if (keys.get(i) == key) return i; // Another thread added it first
+            }
+        }
+
+        private int index(long key) { return (int) (key ^ (key >>> 32)) & mask; }
+
+        private static long nonEmpty(long key) { return key == EMPTY ? 1 : key; }
+    }
 
-        public Tree(){
-            this.root = new Node();
+    /* ======== Alpha-Beta Table ======== */
+
+    /**
+     * Transposition table of AlphaBetaSearch: for a position, the depth it was searched to, the
+     * kind of bound the score is, the score and the best move found.
+     *
+     * Several searches share the table without locks (see LazySmpSearch), so each entry is a
+     * single long, read and written atomically, holding the data next to check bits taken
+     * from the key:
+     *   bits  0-21  score (WIN fits in 21 bits plus sign)
+     *   bits 22-30  best move code, NO_MOVE for none
+     *   bits 31-36  depth, never 0 (0 marks an empty slot)
+     *   bits 37-38  bound (EXACT, LOWER or UPPER)
+     *   bits 39-42  generation of the search that stored it
+     *   bits 43-63  top 21 bits of the key
+     * The slot is picked with the low bits of the key, so the check bits are independent of
+     * it. A write racing with another on the same slot just loses one of the two entries.
+     *
+     * An entry from the current search is only replaced by one searched at least as deep,
+     * whether or not it is for the same position; at equal depth, an EXACT entry for the same
+     * position is not replaced by a bound. Entries from earlier searches are always replaced.
+     */
+    public static class AlphaBetaTable {
+        public static final int EXACT = 0;
+        public static final int LOWER = 1; // Score is at least the stored one (fail high)
+        public static final int UPPER = 2; // Score is at most the stored one (fail low)
+        public static final long MISS = 0;
+        private static final int NO_MOVE = 0x1FF;
+        private static final int CHECK_SHIFT = 43;
+
+        private final int mask;
+        private final AtomicLongArray entries;
+        private volatile int generation;
+
+        /** @param capacity number of entries, a power of two */
+        public AlphaBetaTable(int capacity) {
+            this.mask = capacity - 1;
+            this.entries = new AtomicLongArray(capacity);
         }
 
-        public void pruneTree(PentagoBoardState state) {
-            this.root = root.getChildWithState(state);
-            this.root.parent = null;
+        /** Marks the entries stored so far as old, call once at the start of each search. */
+        public void newSearch() {
+            generation = (generation + 1) & 0xF;
         }
 
-        public void pruneTree(Node node) {
-            this.root = node;
-            this.root.parent = null;
+        /** @return the packed entry of the position, or MISS */
+        public long probe(long key) {
+            long entry = entries.get((int) key & mask);
+            return entry != MISS && entry >>> CHECK_SHIFT == key >>> CHECK_SHIFT ? entry : MISS;
+        }
+
+        /** @param depth at least 1 */
+        public void store(long key, int depth, int bound, int score, int move) {
+            int i = (int) key & mask;
+            long old = entries.get(i);
+            if (old != MISS && generation(old) == generation) {
+                boolean samePosition = old >>> CHECK_SHIFT == key >>> CHECK_SHIFT;
+                if (depth(old) > depth || (samePosition && depth(old) == depth
+                        && bound(old) == EXACT && bound != EXACT)) {
+                    return;
+                }
+            }
+            entries.lazySet(i, (score & 0x3FFFFFL) | (long) (move < 0 ? NO_MOVE : move) << 22
+                    | (long) depth << 31 | (long) bound << 37 | (long) generation << 39
+                    | key >>> CHECK_SHIFT << CHECK_SHIFT);
+        }
+
+        public static int score(long entry) { return (int) (entry << 42 >> 42); }
+
+        /** Best move code, or -1. */
+        public static int move(long entry) {
+            int move = (int) (entry >>> 22 & 0x1FF);
+            return move == NO_MOVE ? -1 : move;
+        }
+
+        public static int depth(long entry) { return (int) (entry >>> 31 & 0x3F); }
+
+        public static int bound(long entry) { return (int) (entry >>> 37 & 3); }
+
+        private static int generation(long entry) { return (int) (entry >>> 39 & 0xF); }
+    }
+
+    /* ======== Child De-duplication ======== */
+
+    /**
+     * Set of position keys used to keep a single child per resulting board. Open addressing
+     * over a fixed table, cleared in O(1) by bumping a generation stamp, so nothing is allocated
+     * per expansion.
+     */
+    public static class KeySet {
+        private static final int SIZE = 1024; // More than twice the number of legal moves
+        private final long[] keys = new long[SIZE];
+        private final int[] stamps = new int[SIZE];
+        private int stamp = 1;
+
+        public void clear() { stamp++; }
+
+        /** @return true if the key was not in the set yet */
+        public boolean add(long key) {
+            int i = (int) (key ^ (key >>> 32)) & (SIZE - 1);
+            while (stamps[i] == stamp) {
+                if (keys[i] == key) return false;
+                i = (i + 1) & (SIZE - 1);
+            }
+            stamps[i] = stamp;
+            keys[i] = key;
+            return true;
         }
     }
 
     /* ======== Upper Confidence Tree Functions ======== */
 
-    private static double uctValue(double totalVisit, double nodeWinScore, double nodeVisit) {
+    static double uctValue(double totalVisit, double nodeWinScore, double nodeVisit) {
         if (nodeVisit == 0) {
             return Integer.MAX_VALUE;
         }
@@ -98,38 +673,39 @@ public class MyTools {
                 + EXPLORATION_PARAMETER * Math.sqrt(Math.log(totalVisit) / nodeVisit);
     }
 
-    public static Node findBestNodeWithUCT(Node node) {
-        int parentVisit = node.visitCount;
-        return Collections.max(
-                node.children,
-                Comparator.comparing(c -> uctValue(parentVisit,
-                        c.winCount, c.visitCount)));
-    }
-
-    /* ======== Helper Functions ======== */
-
-    public static boolean equalsBoard(PentagoBoardState s1, PentagoBoardState s2) {
-        if (s1 == s2) {
-            return true;
+    /**
+     * Child of node with the highest UCT value, skipping proven children.
+     * @return NONE if every child is proven
+     */
+    public static int findBestNodeWithUCT(ConcurrentTree tree, int node) {
+        int parentVisit = tree.visitCount.get(node);
+        int first = tree.firstChild.get(node);
+        int best = ConcurrentTree.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < first + tree.childCount[node]; c++) {
+            if (tree.proof[c] != Tree.UNPROVEN) continue; // Nothing left to learn there
+            double value = uctValue(parentVisit, tree.winCount.get(c), tree.visitCount.get(c));
+            if (value > bestValue) {
+                best = c;
+                bestValue = value;
+            }
         }
+        return best;
+    }
 
-        Piece[][] s1Board = s1.getBoard();
-        Piece[][] s2Board = s2.getBoard();
-        for (int i = 0; i < s1Board.length; i++) {
-            for (int j = 0; j < s1Board[0].length; j++) {
-                if (s1Board[i][j] != s2Board[i][j])
-                    return false;
+    public static int findBestNodeWithUCT(Tree tree, int node) {
+        int parentVisit = tree.visitCount[node];
+        int best = Tree.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = tree.firstChild[node]; c < tree.firstChild[node] + tree.childCount[node]; c++) {
+            if (tree.proof[c] != Tree.UNPROVEN) continue; // Nothing left to learn there
+            double value = uctValue(parentVisit, tree.winCount[c], tree.visitCount[c]);
+            if (value > bestValue) {
+                best = c;
+                bestValue = value;
             }
         }
-        if (s1.getTurnPlayer() != s2.getTurnPlayer())
-            return false;
-        if (s1.getWinner() != s2.getWinner())
-            return false;
-        if (s1.getTurnNumber() != s2.getTurnNumber())
-            return false;
-
-        return true;
+        return best;
     }
 
 }
-
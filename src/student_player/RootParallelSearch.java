@@ -0,0 +1,190 @@
+package student_player;
+
+import boardgame.TimeManager;
+import pentago_twist.PentagoBoardState;
+import student_player.MyTools.*;
+
+import java.util.Arrays;
+
+import static student_player.MyTools.*;
+
+/**
+ * Root parallel MCTS: one independent tree per thread, all grown from the same root. The
+ * statistics of the root children are merged when the search ends.
+ *
+ * With several trees, the trees do not decide by themselves when the move is settled, since
+ * a leader in one small tree can lose the merge. The calling thread watches the merged
+ * statistics instead, and stops all trees together once they settle the move.
+ *
+ * The trees share nothing, so iterations should grow about linearly with the thread count up
+ * to the number of cores; compare runs with -Dstudent.threads=1..8 and -Dstudent.stats=true.
+ */
+public class RootParallelSearch implements SearchEngine {
+
+    private final MonteCarloTreeSearch[] searches;
+
+    // Root children of all trees merged by move code, see merge
+    private final boolean[] present = new boolean[PentagoBoardState.MAX_MOVE_CODES];
+    private final boolean[] lost = new boolean[PentagoBoardState.MAX_MOVE_CODES];
+    private final float[] wins = new float[PentagoBoardState.MAX_MOVE_CODES];
+    private final long[] visits = new long[PentagoBoardState.MAX_MOVE_CODES];
+
+    public RootParallelSearch(int capacity, int numThreads) {
+        searches = new MonteCarloTreeSearch[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            searches[i] = new MonteCarloTreeSearch(capacity / numThreads, numThreads == 1);
+        }
+    }
+
+    public void setRoot(PentagoBoardState boardState) {
+        for (MonteCarloTreeSearch search : searches) {
+            search.setRoot(boardState);
+        }
+    }
+
+    /**
+     * Grows every tree until endTime, one thread per tree, then merges the statistics of the
+     * root children of all trees. A move proven to win in any tree is played right away;
+     * otherwise the move with the most wins overall among those no tree proved lost.
+     */
+    public int search(long endTime, int player) {
+        runSearches(endTime, player);
+        int turnPlayer = searches[0].getTree().rootState.getTurnPlayer();
+
+        int wonMove = merge(turnPlayer);
+        if (wonMove >= 0) return wonMove;
+        int bestMove = -1;
+        for (int code = 0; code < PentagoBoardState.MAX_MOVE_CODES; code++) {
+            if (present[code] && !lost[code] && (bestMove < 0 || wins[code] > wins[bestMove])) {
+                bestMove = code;
+            }
+        }
+        if (bestMove >= 0) return bestMove;
+        // Every move loses, play the one that held out best in the playouts
+        for (int code = 0; code < PentagoBoardState.MAX_MOVE_CODES; code++) {
+            if (present[code] && (bestMove < 0 || wins[code] > wins[bestMove])) {
+                bestMove = code;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Keeps the chosen subtree in every tree.
+     */
+    public void advance(int moveCode) {
+        for (MonteCarloTreeSearch search : searches) {
+            search.advance(moveCode);
+        }
+    }
+
+    public void stop() {
+        for (MonteCarloTreeSearch search : searches) {
+            search.stop();
+        }
+    }
+
+    public long getIterations() {
+        long iterations = 0;
+        for (MonteCarloTreeSearch search : searches) {
+            iterations += search.getIterations();
+        }
+        return iterations;
+    }
+
+    /**
+     * Merges the root children of all trees by move code into present, lost, wins and visits.
+     * @return the move proven to win in some tree, or -1
+     */
+    private int merge(int turnPlayer) {
+        Arrays.fill(present, false);
+        Arrays.fill(lost, false);
+        Arrays.fill(wins, 0);
+        Arrays.fill(visits, 0);
+        for (MonteCarloTreeSearch search : searches) {
+            Tree tree = search.getTree();
+            int first = tree.firstChild[Tree.ROOT];
+            for (int c = first; c >= 0 && c < first + tree.childCount[Tree.ROOT]; c++) {
+                if (tree.proof[c] == turnPlayer) return tree.move[c];
+                present[tree.move[c]] = true;
+                lost[tree.move[c]] |= tree.proof[c] == 1 - turnPlayer;
+                wins[tree.move[c]] += tree.winCount[c];
+                visits[tree.move[c]] += tree.visitCount[c];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * MonteCarloTreeSearch.isSettled on the merged root children: whether the move search()
+     * would play can no longer be overtaken, or is confidently better than every other move
+     * that is not proven lost.
+     */
+    private boolean isSettled(long startTime, long endTime) {
+        if (merge(searches[0].getTree().rootState.getTurnPlayer()) >= 0) return true;
+        int best = -1;
+        float second = Float.NEGATIVE_INFINITY;
+        boolean anyPresent = false;
+        for (int code = 0; code < PentagoBoardState.MAX_MOVE_CODES; code++) {
+            anyPresent |= present[code];
+            if (!present[code] || lost[code]) continue;
+            if (best < 0 || wins[code] > wins[best]) {
+                if (best >= 0) second = wins[best];
+                best = code;
+            } else if (wins[code] > second) {
+                second = wins[code];
+            }
+        }
+        if (best < 0) return anyPresent; // Every move loses
+        long now = System.currentTimeMillis();
+        if (TimeManager.cannotBeOvertaken(wins[best], second, PLAYOUTS_PER_LEAF, getIterations(),
+                now - startTime, endTime - now)) {
+            return true;
+        }
+        for (int code = 0; code < PentagoBoardState.MAX_MOVE_CODES; code++) {
+            if (code != best && present[code] && !lost[code]
+                    && !TimeManager.clearlyBetter(wins[best], visits[best], wins[code], visits[code])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs one thread per tree. With several trees the calling thread polls the merged
+     * statistics every SETTLED_POLL_MILLIS and stops all trees once the move is settled. It
+     * reads the trees while they grow, without locks; a slightly stale count only delays the
+     * decision to the next poll.
+     */
+    private void runSearches(long endTime, int player) {
+        if (searches.length == 1) {
+            searches[0].search(endTime, player); // The tree checks settledness by itself
+            return;
+        }
+        Thread[] workers = new Thread[searches.length];
+        for (int i = 0; i < workers.length; i++) {
+            MonteCarloTreeSearch search = searches[i];
+            workers[i] = new Thread(() -> search.search(endTime, player), "mcts-" + i);
+            workers[i].start();
+        }
+        // Pondering counts wins for the other player, so there is no move of ours to settle
+        boolean ourMove = player == searches[0].getTree().rootState.getTurnPlayer();
+        long startTime = System.currentTimeMillis();
+        boolean settled = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join(SETTLED_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop();
+                    settled = true;
+                }
+                if (!settled && ourMove && worker.isAlive() && isSettled(startTime, endTime)) {
+                    stop();
+                    settled = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package student_player;
+
+import pentago_twist.PentagoBoardState;
+
+/**
+ * A search that StudentPlayer keeps between moves. Implementations differ in how the work is
+ * split over threads and in how positions are stored.
+ */
+public interface SearchEngine {
+
+    /**
+     * Moves the root to the given state, keeping whatever was learned about it. Also clears
+     * any earlier stop request. Must not be called while search() is running.
+     */
+    void setRoot(PentagoBoardState boardState);
+
+    /**
+     * Searches from the root until endTime or until stop() is called.
+     * @param player the player whose playout wins are counted, normally the one to move at the
+     *               root, but the other one while pondering
+     * @return the move code of the best move at the root, or -1 if none was searched
+     */
+    int search(long endTime, int player);
+
+    /**
+     * Moves the root to the position after the given move.
+     */
+    void advance(int moveCode);
+
+    /**
+     * Makes a running search() return soon. Safe to call from any thread.
+     */
+    void stop();
+
+    /**
+     * Iterations (selection to back propagation) run by the last search(), over all threads.
+     */
+    long getIterations();
+}
@@ -1,25 +1,22 @@
 // Code inspired by: https://www.baeldung.com/java-monte-carlo-tree-search
 package student_player;
 
-import boardgame.Board;
 import boardgame.Move;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
 import pentago_twist.PentagoPlayer;
-import student_player.MyTools.*;
-
-import java.util.List;
 
 import static student_player.MyTools.*;
 
 /** A player file submitted by a student. */
 public class StudentPlayer extends PentagoPlayer {
 
-    static int curPlayer;
-    static int opponent;
-
-    boolean isFirstMove = true;
-    static Tree tree;
+    private final int numThreads;
+    private final String searchMode;
+    // Created on first use, kept between moves
+    private SearchEngine engine;
+    // Searches the opponent's turn in the background, see startPondering
+    private Thread ponderThread;
 
     /**
      * You must modify this constructor to return your student number. This is
@@ -27,7 +24,16 @@ public class StudentPlayer extends PentagoPlayer {
      * associate you with your agent. The constructor should do nothing else.
      */
     public StudentPlayer() {
+        this(NUM_THREADS, SEARCH_MODE);
+    }
+
+    /**
+     * @param searchMode one of "root", "tree" or "dag", see MyTools.SEARCH_MODE
+     */
+    public StudentPlayer(int numThreads, String searchMode) {
         super("260835976");
+        this.numThreads = Math.max(1, numThreads);
+        this.searchMode = searchMode;
     }
 
     /**
@@ -37,112 +43,72 @@ public class StudentPlayer extends PentagoPlayer {
      */
     public Move chooseMove(PentagoBoardState boardState) {
         // define the time when search is terminated
-        long endTime;
+        long endTime = getTimeManager().getDeadline(timeWeight(boardState));
 
-        if (isFirstMove) {
-            endTime = System.currentTimeMillis() + FIRST_MOVE_TIME_LIMIT;
-            // Do first move shit
-            tree = new Tree();
-            isFirstMove = false;
-        } else {
-            endTime = System.currentTimeMillis() + MOVE_TIME_LIMIT;
-            tree.pruneTree(boardState);
-            if (tree.root == null) {
-                tree = new Tree();
-            }
-        }
+        setRoot(boardState);
 
         // Find move
-        Move myMove = chooseMoveMCTS(boardState, endTime);
+        long start = System.currentTimeMillis();
+        int bestMove = engine.search(endTime, boardState.getTurnPlayer());
+        if (PRINT_STATS) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            System.out.println("search " + searchMode + ", " + numThreads + " threads: "
+                    + engine.getIterations() + " iterations in " + elapsed + "ms, "
+                    + engine.getIterations() * 1000 / elapsed + "/s");
+        }
+        if (bestMove < 0) { // Nothing was expanded, should not happen with any time left
+            return boardState.getRandomMove();
+        }
+        engine.advance(bestMove);
+        Move myMove = PentagoMove.fromMoveCode(bestMove, boardState.getTurnPlayer());
 
         // Return your move to be processed by the server.
         return myMove;
     }
 
-    /* ======== Monte Carlo Search Tree Implementation ======== */
-
-    public static Move chooseMoveMCTS(PentagoBoardState boardState, long endTime) {
-        // set curPlayer and opponent
-        curPlayer = boardState.getTurnPlayer();
-        opponent = (curPlayer == PentagoBoardState.WHITE) ? PentagoBoardState.BLACK: PentagoBoardState.WHITE;
-
-        tree.root.state = boardState;
-
-        while (System.currentTimeMillis() < endTime) {
-            /* SELECTION : get most promising Node using UCT policy */
-            Node promisingNode = selection(tree.root);
-
-            /* EXPANSION : create the children of the selected node */
-            if (!promisingNode.state.gameOver()) {
-                expansion(promisingNode);
-            }
-
-            /* SIMULATION : select child and simulate to terminal node */
-            Node nodeToExplore = promisingNode;
-            if (!promisingNode.children.isEmpty()) {
-                nodeToExplore = promisingNode.getRandomChild();
-            }
-            int playoutResult = simulation(nodeToExplore);
-
-            /* BACK PROPAGATION : update the win and visit counts for nodes
-                                 on the path to the current node */
-            backPropagation(nodeToExplore, playoutResult);
-        }
-
-        // Get child with max score and update the tree
-        Node selectedNode = tree.root.getChildWithMaxScore();
-        tree.pruneTree(selectedNode);
-
-        return selectedNode.move;
-    }
-
-    private static Node selection(Node rootNode) {
-        Node node = rootNode;
-        while (!node.children.isEmpty()) {
-            node = findBestNodeWithUCT(node);
-        }
-        return node;
-    }
-
-    private static void expansion(Node node) {
-        List<PentagoMove> legalMoves = node.state.getAllLegalMoves();
-
-        for (int i = 0; i < legalMoves.size(); i++) {
-            PentagoBoardState childState = (PentagoBoardState) node.state.clone();
-            childState.processMove(legalMoves.get(i));
-
-            Node child = new Node(legalMoves.get(i), childState, node);
-            node.children.add(child);
-        }
+    /**
+     * Keeps growing the trees from the position after our move while the opponent thinks.
+     * When the opponent's move arrives, chooseMove re-roots at the matching child, so the
+     * search starts with everything found during the opponent's turn.
+     */
+    @Override
+    public void startPondering(PentagoBoardState boardState) {
+        setRoot(boardState);
+        // Statistics stay from our side, like in the searches run on our own turn
+        int me = (boardState.getTurnPlayer() == PentagoBoardState.WHITE) ? PentagoBoardState.BLACK : PentagoBoardState.WHITE;
+        ponderThread = new Thread(() -> engine.search(Long.MAX_VALUE, me), "mcts-ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
     }
 
-    private static int simulation(Node node) {
-        PentagoBoardState tmpState = (PentagoBoardState) node.state.clone();
-        PentagoMove tmpMove;
+    @Override
+    public void stopPondering() {
+        if (ponderThread == null) return;
 
-        // check if game is over and opponent won
-        if (opponent == tmpState.getWinner()) {
-            node.parent.winCount = Integer.MIN_VALUE;
-            return opponent;
-        }
-        // if game is not over simulate to the end by selecting random moves
-        while (tmpState.getWinner() == Board.NOBODY) {
-            tmpMove = (PentagoMove) tmpState.getRandomMove();
-            tmpState.processMove(tmpMove);
+        engine.stop();
+        try {
+            ponderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return tmpState.getWinner();
+        ponderThread = null;
     }
 
-    private static void backPropagation(Node leafNode, int winner) {
-        Node tmp = leafNode;
-
-        while (tmp != null) {
-            tmp.visitCount++;
-            if (winner == curPlayer) {
-                tmp.winCount++;
+    /**
+     * Creates the search on first use, then moves its root to the given state.
+     */
+    private void setRoot(PentagoBoardState boardState) {
+        if (engine == null) {
+            // Do first move shit
+            if ("tree".equals(searchMode)) {
+                engine = new TreeParallelSearch(NODE_CAPACITY, numThreads);
+            } else if ("dag".equals(searchMode)) {
+                engine = new TranspositionSearch(TABLE_CAPACITY, numThreads);
+            } else {
+                engine = new RootParallelSearch(NODE_CAPACITY, numThreads);
             }
-            tmp = tmp.parent;
         }
+        engine.setRoot(boardState);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package student_player;
+
+import boardgame.Board;
+import boardgame.Deadline;
+import pentago_twist.PentagoBoardState;
+import student_player.MyTools.*;
+
+import java.util.Random;
+
+import static student_player.MyTools.*;
+
+/**
+ * MCTS over the graph of positions rather than the tree of move sequences.
+ *
+ * Nodes live in a TranspositionTable keyed by the Zobrist key of the position, so the visits
+ * made through one move order are seen by every other move order reaching the same board.
+ * Children are not stored: at each step of the selection the legal moves are generated and
+ * their positions looked up in the table. A position that is not in the table yet is added
+ * and a playout is run from it, so the graph grows by one node per iteration. Statistics are
+ * per node, and the UCT value of a move uses the statistics of the position it leads to.
+ *
+ * All threads share the table and use virtual loss like TreeParallelSearch.
+ */
+public class TranspositionSearch implements SearchEngine {
+
+    private final TranspositionTable table;
+    private final Worker[] workers;
+    private PentagoBoardState rootState;
+    private int rootSlot;
+    private volatile boolean stopRequested;
+
+    public TranspositionSearch(int capacity, int numThreads) {
+        this.table = new TranspositionTable(capacity);
+        this.workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker();
+        }
+    }
+
+    public TranspositionTable getTable() { return table; }
+
+    /**
+     * Positions never come back once a piece is placed, so the table only fills up with
+     * positions from earlier moves. It is emptied when more than half full.
+     */
+    public void setRoot(PentagoBoardState boardState) {
+        stopRequested = false;
+        if (table.size() > table.capacity / 2) {
+            table.clear();
+        }
+        rootState = (PentagoBoardState) boardState.clone();
+        rootSlot = table.findOrInsert(rootState.getZobristKey());
+    }
+
+    public void advance(int moveCode) {
+        PentagoBoardState next = (PentagoBoardState) rootState.clone();
+        next.processMove(moveCode);
+        setRoot(next);
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getIterations() {
+        long iterations = 0;
+        for (Worker worker : workers) {
+            iterations += worker.iterations;
+        }
+        return iterations;
+    }
+
+    /**
+     * Runs all workers until endTime or until stop() is called, the calling thread acting as
+     * the first one. Wins are stored per node for the player who moved into it, so player is
+     * not needed here.
+     * @return the move code leading to the position with the most wins
+     */
+    public int search(long endTime, int player) {
+        if (rootSlot == TranspositionTable.NONE) {
+            rootSlot = table.findOrInsert(rootState.getZobristKey());
+            if (rootSlot == TranspositionTable.NONE) return -1;
+        }
+
+        Thread[] threads = new Thread[workers.length - 1];
+        for (int i = 0; i < threads.length; i++) {
+            Worker worker = workers[i + 1];
+            threads[i] = new Thread(() -> worker.run(endTime), "mcts-" + (i + 1));
+            threads[i].start();
+        }
+        workers[0].run(endTime);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return getMoveWithMaxScore();
+    }
+
+    private int getMoveWithMaxScore() {
+        int[] moves = new int[PentagoBoardState.MAX_MOVE_CODES];
+        int numMoves = rootState.getAllLegalMoveCodes(moves);
+        int bestMove = -1;
+        int bestWins = Integer.MIN_VALUE;
+        for (int i = 0; i < numMoves; i++) {
+            int slot = table.find(rootState.getZobristKeyAfter(moves[i]));
+            if (slot != TranspositionTable.NONE && table.winCount.get(slot) > bestWins) {
+                bestMove = moves[i];
+                bestWins = table.winCount.get(slot);
+            }
+        }
+        return bestMove;
+    }
+
+    /* ======== Per-thread Search State ======== */
+
+    private class Worker {
+        private final Random rand = new Random();
+        private final int[] legalMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+        private final KeySet childKeys = new KeySet();
+        // Slots on the current path, and the player who moved into each of them
+        private final int[] path = new int[PentagoBoardState.MAX_TURNS * 2 + 1];
+        private final int[] mover = new int[PentagoBoardState.MAX_TURNS * 2 + 1];
+        private int pathLength;
+        // Results of the last simulation
+        private int whiteWins;
+        private int blackWins;
+        private long iterations;
+
+        void run(long endTime) {
+            PentagoBoardState state = (PentagoBoardState) rootState.clone();
+            Deadline deadline = newDeadline(endTime);
+            iterations = 0;
+
+            while (!stopRequested && !deadline.expired()) {
+                pathLength = 0;
+                push(rootSlot, opponentOf(state.getTurnPlayer()));
+
+                /* SELECTION and EXPANSION : follow UCT until a position not visited yet is reached */
+                boolean reachedNew = false;
+                while (!reachedNew && !state.gameOver()) {
+                    reachedNew = selectChild(state);
+                }
+
+                /* SIMULATION : random playouts from the last position */
+                simulation(state);
+
+                /* BACK PROPAGATION : replace the virtual loss with the real result */
+                backPropagation();
+
+                while (state.getUndoDepth() > 0) {
+                    state.undoMove();
+                }
+                iterations++;
+            }
+        }
+
+        /**
+         * Plays the UCT-best move, or a move to a position that has not been visited yet if
+         * there is one, and adds the resulting position to the path. When the table is full,
+         * the new position is left out of the path but still simulated from.
+         * @return true if the move leads to a position not visited yet
+         */
+        private boolean selectChild(PentagoBoardState state) {
+            int node = path[pathLength - 1];
+            int parentVisit = table.visitCount.get(node);
+            int numMoves = state.getAllLegalMoveCodes(legalMoves);
+            childKeys.clear();
+
+            int bestMove = -1;
+            int bestSlot = TranspositionTable.NONE;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int newMove = -1;
+            int numNew = 0;
+            for (int i = 0; i < numMoves; i++) {
+                long key = state.getZobristKeyAfter(legalMoves[i]);
+                if (!childKeys.add(key)) continue;
+
+                int slot = table.find(key);
+                if (slot == TranspositionTable.NONE || table.visitCount.get(slot) == 0) {
+                    // Pick uniformly among the unvisited positions
+                    if (rand.nextInt(++numNew) == 0) newMove = legalMoves[i];
+                } else if (numNew == 0) {
+                    double value = uctValue(parentVisit, table.winCount.get(slot), table.visitCount.get(slot));
+                    if (value > bestValue) {
+                        bestMove = legalMoves[i];
+                        bestSlot = slot;
+                        bestValue = value;
+                    }
+                }
+            }
+
+            int turnPlayer = state.getTurnPlayer();
+            if (numNew > 0) {
+                state.applyMove(newMove);
+                push(table.findOrInsert(state.getZobristKey()), turnPlayer);
+                return true;
+            }
+            state.applyMove(bestMove);
+            push(bestSlot, turnPlayer);
+            return false;
+        }
+
+        private void push(int slot, int player) {
+            if (slot != TranspositionTable.NONE) {
+                table.visitCount.addAndGet(slot, VIRTUAL_LOSS);
+            }
+            path[pathLength] = slot;
+            mover[pathLength] = player;
+            pathLength++;
+        }
+
+        /**
+         * Runs PLAYOUTS_PER_LEAF random playouts from the given state and counts the wins of
+         * each colour in whiteWins and blackWins.
+         */
+        private void simulation(PentagoBoardState state) {
+            whiteWins = 0;
+            blackWins = 0;
+            int leafDepth = state.getUndoDepth();
+            for (int i = 0; i < PLAYOUTS_PER_LEAF; i++) {
+                while (state.getWinner() == Board.NOBODY) {
+                    state.applyMove(state.randomLegalMoveCode(rand));
+                }
+                if (state.getWinner() == PentagoBoardState.WHITE) {
+                    whiteWins++;
+                } else if (state.getWinner() == PentagoBoardState.BLACK) {
+                    blackWins++;
+                }
+                while (state.getUndoDepth() > leafDepth) {
+                    state.undoMove();
+                }
+            }
+        }
+
+        private void backPropagation() {
+            for (int i = 0; i < pathLength; i++) {
+                int slot = path[i];
+                if (slot == TranspositionTable.NONE) continue;
+                table.visitCount.addAndGet(slot, PLAYOUTS_PER_LEAF - VIRTUAL_LOSS);
+                int wins = mover[i] == PentagoBoardState.WHITE ? whiteWins : blackWins;
+                if (wins > 0) {
+                    table.winCount.addAndGet(slot, wins);
+                }
+            }
+        }
+    }
+
+    private static int opponentOf(int player) {
+        return (player == PentagoBoardState.WHITE) ? PentagoBoardState.BLACK : PentagoBoardState.WHITE;
+    }
+}
@@ -0,0 +1,278 @@
+package student_player;
+
+import boardgame.Board;
+import boardgame.Deadline;
+import boardgame.TimeManager;
+import pentago_twist.PentagoBoardState;
+import student_player.MyTools.*;
+
+import java.util.Random;
+
+import static student_player.MyTools.*;
+
+/**
+ * MCTS where all threads grow the same tree.
+ *
+ * Each thread walks down with UCT, adding VIRTUAL_LOSS visits to the nodes on its path so
+ * that threads running at the same time spread over different branches. The virtual loss is
+ * taken back during back propagation, when the real visit and result are added.
+ *
+ * Threads contend on the counters near the root, so iterations grow less than linearly with
+ * the thread count; compare runs with -Dstudent.search=tree, -Dstudent.threads=1..8 and
+ * -Dstudent.stats=true against the root parallel search on the same machine.
+ */
+public class TreeParallelSearch implements SearchEngine {
+
+    private final ConcurrentTree tree;
+    private final Worker[] workers;
+    private int curPlayer;
+    // Set from another thread to end search() before its end time
+    private volatile boolean stopRequested;
+
+    public TreeParallelSearch(int capacity, int numThreads) {
+        this.tree = new ConcurrentTree(capacity);
+        this.workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker();
+        }
+    }
+
+    public ConcurrentTree getTree() { return tree; }
+
+    /**
+     * Moves the root to the given state, keeping the matching subtree when the state is the
+     * current root or one of its children. Also clears any earlier stop request.
+     */
+    public void setRoot(PentagoBoardState boardState) {
+        stopRequested = false;
+        if (tree.rootState != null && tree.rootState.equals(boardState)) {
+            return;
+        }
+        if (tree.rootState == null || !tree.pruneTree(boardState)) {
+            tree.reset(boardState);
+        }
+    }
+
+    /**
+     * Moves the root to its child reached by the given move code, or starts a new tree there
+     * if that child was never created.
+     */
+    public void advance(int moveCode) {
+        int child = tree.getChild(ConcurrentTree.ROOT, moveCode);
+        if (child != ConcurrentTree.NONE) {
+            tree.pruneTree(child);
+        } else {
+            PentagoBoardState next = (PentagoBoardState) tree.rootState.clone();
+            next.processMove(moveCode);
+            tree.reset(next);
+        }
+    }
+
+    /**
+     * Makes a running search() return once every worker finishes its current iteration.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getIterations() {
+        long iterations = 0;
+        for (Worker worker : workers) {
+            iterations += worker.iterations;
+        }
+        return iterations;
+    }
+
+    /**
+     * Runs all workers until endTime or until stop() is called, the calling thread acting as
+     * the first one.
+     * @param player the player whose playout wins are counted, see MonteCarloTreeSearch.search
+     * @return the move code of the best child of the root, or -1 if the root has no children
+     */
+    public int search(long endTime, int player) {
+        curPlayer = player;
+
+        Thread[] threads = new Thread[workers.length - 1];
+        for (int i = 0; i < threads.length; i++) {
+            Worker worker = workers[i + 1];
+            threads[i] = new Thread(() -> worker.run(endTime), "mcts-" + (i + 1));
+            threads[i].start();
+        }
+        workers[0].run(endTime);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (tree.childCount[ConcurrentTree.ROOT] == 0) return -1;
+        return tree.move[tree.getChildWithMaxScore(ConcurrentTree.ROOT, tree.rootState.getTurnPlayer())];
+    }
+
+    /**
+     * See MonteCarloTreeSearch.isSettled.
+     */
+    private boolean isSettled(long iterations, long startTime, long endTime) {
+        int turnPlayer = tree.rootState.getTurnPlayer();
+        if (curPlayer != turnPlayer) return false; // Pondering, not our move
+        int first = tree.firstChild.get(ConcurrentTree.ROOT);
+        if (first < 0) return false;
+        int end = first + tree.childCount[ConcurrentTree.ROOT];
+        int best = ConcurrentTree.NONE;
+        int bestWins = Integer.MIN_VALUE;
+        int second = Integer.MIN_VALUE;
+        for (int c = first; c < end; c++) {
+            if (tree.proof[c] == turnPlayer) return true;
+            if (tree.proof[c] == 1 - turnPlayer) continue;
+            int wins = tree.winCount.get(c);
+            if (best == ConcurrentTree.NONE || wins > bestWins) {
+                second = bestWins;
+                best = c;
+                bestWins = wins;
+            } else if (wins > second) {
+                second = wins;
+            }
+        }
+        if (best == ConcurrentTree.NONE) return true; // Every move loses
+        long now = System.currentTimeMillis();
+        if (TimeManager.cannotBeOvertaken(bestWins, second, PLAYOUTS_PER_LEAF, iterations,
+                now - startTime, endTime - now)) {
+            return true;
+        }
+        for (int c = first; c < end; c++) {
+            if (c != best && tree.proof[c] != 1 - turnPlayer
+                    && !TimeManager.clearlyBetter(bestWins, tree.visitCount.get(best),
+                            tree.winCount.get(c), tree.visitCount.get(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* ======== Per-thread Search State ======== */
+
+    private class Worker {
+        private final Random rand = new Random();
+        private final int[] legalMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+        private final int[] childMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+        private final KeySet childKeys = new KeySet();
+        private long iterations;
+
+        void run(long endTime) {
+            PentagoBoardState state = (PentagoBoardState) tree.rootState.clone();
+            long startTime = System.currentTimeMillis();
+            iterations = 0;
+            Deadline deadline = newDeadline(endTime);
+
+            // Once the root is proven, more iterations cannot change the move
+            while (!stopRequested && tree.proof[ConcurrentTree.ROOT] == Tree.UNPROVEN && !deadline.expired()) {
+                /* SELECTION : get most promising Node using UCT policy */
+                int promisingNode = selection(state);
+
+                /* EXPANSION : only one thread expands a node, the others simulate from the leaf */
+                if (!state.gameOver() && tree.claimExpansion(promisingNode)) {
+                    expansion(promisingNode, state);
+                }
+
+                /* SIMULATION : select child and simulate to terminal node */
+                int nodeToExplore = promisingNode;
+                int child = tree.getRandomChild(promisingNode, rand);
+                if (child != ConcurrentTree.NONE) {
+                    nodeToExplore = child;
+                    tree.visitCount.addAndGet(child, VIRTUAL_LOSS);
+                    state.applyMove(tree.move[nodeToExplore]);
+                }
+                int playoutWins = simulation(nodeToExplore, state);
+
+                /* BACK PROPAGATION : replace the virtual loss with the real result, spread proofs */
+                backPropagation(nodeToExplore, state.getTurnPlayer(), PLAYOUTS_PER_LEAF, playoutWins);
+
+                while (state.getUndoDepth() > 0) {
+                    state.undoMove();
+                }
+
+                // All workers run at about the same rate, so the search did this many iterations
+                if (++iterations % SETTLED_CHECK_INTERVAL == 0
+                        && isSettled(iterations * workers.length, startTime, endTime)) {
+                    stop();
+                }
+            }
+        }
+
+        private int selection(PentagoBoardState state) {
+            int node = ConcurrentTree.ROOT;
+            tree.visitCount.addAndGet(node, VIRTUAL_LOSS);
+            while (tree.firstChild.get(node) >= 0) {
+                int child = findBestNodeWithUCT(tree, node);
+                if (child == ConcurrentTree.NONE) break; // Proven by another thread meanwhile
+                node = child;
+                tree.visitCount.addAndGet(node, VIRTUAL_LOSS);
+                state.applyMove(tree.move[node]);
+            }
+            return node;
+        }
+
+        private void expansion(int node, PentagoBoardState state) {
+            int numMoves = state.getAllLegalMoveCodes(legalMoves);
+            childKeys.clear();
+            int numChildren = 0;
+
+            for (int i = 0; i < numMoves; i++) {
+                state.applyMove(legalMoves[i]);
+                if (childKeys.add(state.getZobristKey())) {
+                    childMoves[numChildren++] = legalMoves[i];
+                }
+                state.undoMove();
+            }
+            tree.addChildren(node, childMoves, numChildren);
+        }
+
+        /**
+         * Runs PLAYOUTS_PER_LEAF random playouts from the state of node. A node where the game
+         * is over is proven instead.
+         * @return the number of playouts won by curPlayer
+         */
+        private int simulation(int node, PentagoBoardState state) {
+            if (state.getWinner() != Board.NOBODY) {
+                tree.setProof(node, state.getWinner());
+                return state.getWinner() == curPlayer ? PLAYOUTS_PER_LEAF : 0;
+            }
+            // if game is not over simulate to the end by selecting random moves
+            int leafDepth = state.getUndoDepth();
+            int wins = 0;
+            for (int i = 0; i < PLAYOUTS_PER_LEAF; i++) {
+                while (state.getWinner() == Board.NOBODY) {
+                    state.applyMove(state.randomLegalMoveCode(rand));
+                }
+                if (state.getWinner() == curPlayer) {
+                    wins++;
+                }
+                while (state.getUndoDepth() > leafDepth) {
+                    state.undoMove();
+                }
+            }
+            return wins;
+        }
+
+        private void backPropagation(int leafNode, int leafTurn, int visits, int wins) {
+            int tmp = leafNode;
+            int turn = leafTurn;
+            boolean proving = tree.proof[leafNode] != Tree.UNPROVEN;
+
+            while (tmp >= 0) {
+                // The virtual loss already counted as one visit
+                tree.visitCount.addAndGet(tmp, visits - VIRTUAL_LOSS);
+                if (wins > 0) {
+                    tree.winCount.addAndGet(tmp, wins);
+                }
+                tmp = tree.parent[tmp];
+                turn = 1 - turn; // Players alternate on every move
+                if (proving && tmp >= 0) {
+                    proving = tree.updateProof(tmp, turn);
+                }
+            }
+        }
+    }
+}
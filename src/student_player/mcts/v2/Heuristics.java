@@ -1,9 +1,12 @@
 package student_player.mcts.v2;
 
+import pentago_twist.PentagoBitboard;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
+import pentago_twist.PentagoWinLines;
 
 import java.util.List;
+import java.util.Random;
 
 import static pentago_twist.PentagoBoardState.Piece;
 
@@ -15,6 +18,10 @@ public class Heuristics {
     private static final int DIAG_2 = 3;
     private static final int[] DIRECTIONS = new int[]{HORIZ, VERT, DIAG_1, DIAG_2};
     private static final int[] WEIGHTS = new int[] {0, 1, 10, 100, 1000};
+    // Chance out of 4 that a playout move goes on a cell extending or blocking a line with at
+    // least 3 pieces, and at least 2 pieces, of a single colour (see chosePlayoutMove)
+    private static final int STRONG_LINE_ODDS = 2;
+    private static final int LINE_ODDS = 3;
 
     public static PentagoMove choseMove(PentagoBoardState state) {
         int maxScore = Integer.MIN_VALUE;
@@ -22,9 +29,9 @@ public class Heuristics {
         List<PentagoMove> moves = state.getAllLegalMoves();
         Piece you = state.getTurnPlayer() == PentagoBoardState.BLACK ? Piece.BLACK : Piece.WHITE;
         for (PentagoMove m : moves) {
-            PentagoBoardState child = (PentagoBoardState) state.clone();
-            child.processMove(m);
-            int score = evaluateConnectedness(child, you);
+            state.applyMove(m);
+            int score = evaluateConnectedness(state, you);
+            state.undoMove();
             if (score > maxScore) {
                 bestMove = m;
                 maxScore = score;
@@ -74,4 +81,92 @@ public class Heuristics {
         }
         return score;
     }
+
+    /* ======== Playout Policy ======== */
+
+    /**
+     * Move for a playout, as a packed move code (see PentagoMove.encode), at a cost close to
+     * that of a uniform random move rather than a search over all moves:
+     * - a move winning on the spot, if there is one;
+     * - else a piece on a cell where the opponent could win next move;
+     * - else a piece on a random cell with a random twist, drawn more often on cells of lines
+     *   that hold several pieces of one colour only (see STRONG_LINE_ODDS and LINE_ODDS).
+     * Everything comes from one pass over the win lines on bitboards, no move is played.
+     * Threats are lines with four pieces of one colour and an empty cell, which the piece
+     * completes with a twist of a quadrant off the line; wins made by the twist itself are
+     * left to the tree search.
+     */
+    public static int chosePlayoutMove(PentagoBoardState state, Random rand) {
+        int player = state.getTurnPlayer();
+        long mine = state.getPieces(player);
+        long theirs = state.getPieces(1 - player);
+        long empty = state.getEmptyCells();
+
+        int myThreats = 0;
+        long theirHoles = 0;
+        long hot = 0;
+        long strong = 0;
+        for (int i = 0; i < PentagoWinLines.NUM_LINES; i++) {
+            long line = PentagoWinLines.lineMask(i);
+            long own = mine & line;
+            long other = theirs & line;
+            if (own != 0 && other != 0) continue; // Dead line
+            int count = Long.bitCount(own | other);
+            if (count == PentagoWinLines.WIN_LENGTH - 1) {
+                if (own != 0) {
+                    myThreats |= 1 << i;
+                } else {
+                    theirHoles |= line & ~other;
+                }
+            }
+            if (count >= 2) hot |= line;
+            if (count >= 3) strong |= line;
+        }
+
+        int win = winningMove(myThreats, mine, theirs);
+        if (win >= 0) return win;
+
+        if (theirHoles != 0) {
+            // Twist another quadrant, so the blocking piece stays on the line
+            int cell = randomCell(theirHoles, rand);
+            int quad = (PentagoBitboard.quadrantOf(cell) + 1 + rand.nextInt(PentagoBitboard.NUM_QUADS - 1))
+                    % PentagoBitboard.NUM_QUADS;
+            return cell << 3 | quad << 1 | rand.nextInt(PentagoBitboard.NUM_TWISTS);
+        }
+
+        int r = rand.nextInt(4);
+        long cells = (r < STRONG_LINE_ODDS && (strong & empty) != 0) ? strong & empty
+                : (r < LINE_ODDS && (hot & empty) != 0) ? hot & empty
+                : empty;
+        return randomCell(cells, rand) << 3 | rand.nextInt(PentagoBitboard.NUM_QUADS * PentagoBitboard.NUM_TWISTS);
+    }
+
+    /**
+     * A move completing one of the threat lines (bit i for line i, each with four pieces and
+     * an empty cell), or -1. The twist is made on a quadrant off the line, so the line stays
+     * complete; it must not complete a line of other, which would only draw.
+     */
+    static int winningMove(int threats, long pieces, long other) {
+        for (; threats != 0; threats &= threats - 1) {
+            long line = PentagoWinLines.lineMask(Integer.numberOfTrailingZeros(threats));
+            int cell = Long.numberOfTrailingZeros(line & ~pieces);
+            for (int quad = 0; quad < PentagoBitboard.NUM_QUADS; quad++) {
+                if ((line & PentagoBitboard.quadrantMask(quad)) != 0) continue;
+                for (int twist = 0; twist < PentagoBitboard.NUM_TWISTS; twist++) {
+                    if (!PentagoWinLines.hasLine(PentagoBitboard.twist(other, quad, twist))) {
+                        return cell << 3 | quad << 1 | twist;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Index of a cell drawn uniformly from a non-empty set of cells. */
+    private static int randomCell(long cells, Random rand) {
+        for (int skip = rand.nextInt(Long.bitCount(cells)); skip > 0; skip--) {
+            cells &= cells - 1;
+        }
+        return Long.numberOfTrailingZeros(cells);
+    }
 }
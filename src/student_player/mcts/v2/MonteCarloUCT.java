@@ -1,9 +1,11 @@
 package student_player.mcts.v2;
 
 import boardgame.Board;
+import boardgame.Deadline;
 import pentago_twist.PentagoBoard;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
+import student_player.MyTools.KeySet;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -13,6 +15,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 public class MonteCarloUCT {
 
@@ -20,7 +23,10 @@ public class MonteCarloUCT {
     private long timeLimit;
     private SimulationStrategy simulationStrategy;
     private static final String TRAINING_FILE = "OPENING_MOVES.ser";
+    private static final Random rand = new Random();
     private MCTSNode root;
+    // Reused by every expansion, see expand
+    private final KeySet childKeys = new KeySet();
 
     public MonteCarloUCT() {
         descendantLookup = new HashMap<>();
@@ -69,11 +75,11 @@ public class MonteCarloUCT {
     }
 
     public void train(PentagoBoardState board, long timeLimit) {
-        long endTime = System.currentTimeMillis() + timeLimit;
+        Deadline deadline = Deadline.in(timeLimit);
         if (root == null || !root.state.equals(board)) {
             root = descendantLookup.getOrDefault(board, new MCTSNode(board));
         }
-        while (System.currentTimeMillis() < endTime) {
+        while (!deadline.expired()) {
             MCTSNode selectedNode = selectNode(root);
             if (!selectedNode.state.gameOver()) {
                 expand(selectedNode);
@@ -114,9 +120,16 @@ public class MonteCarloUCT {
         return n;
     }
 
-    private static void expand(MCTSNode node) {
+    private void expand(MCTSNode node) {
         List<PentagoMove> moves = node.state.getAllLegalMoves();
-        for (PentagoMove m : moves) new MCTSNode(node, m);
+        // Only one child per resulting board, so visits are not split between identical subtrees
+        childKeys.clear();
+        for (PentagoMove m : moves) {
+            node.state.applyMove(m);
+            boolean isNew = childKeys.add(node.state.getZobristKey());
+            node.state.undoMove();
+            if (isNew) new MCTSNode(node, m);
+        }
     }
 
     private static void backPropagate(MCTSNode node, int winner) {
@@ -146,6 +159,9 @@ public class MonteCarloUCT {
             else if (strategy == SimulationStrategy.CONNECTEDNESS_HEURISTIC) {
                 state.processMove(Heuristics.choseMove(state));
             }
+            else if (strategy == SimulationStrategy.THREAT_HEURISTIC) {
+                state.processMove(Heuristics.chosePlayoutMove(state, rand));
+            }
         }
         return state.getWinner();
     }
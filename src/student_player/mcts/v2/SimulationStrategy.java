@@ -1,5 +1,7 @@
 package student_player.mcts.v2;
 
 public enum SimulationStrategy{
-    RANDOM, CONNECTEDNESS_HEURISTIC
+    RANDOM, CONNECTEDNESS_HEURISTIC,
+    // Wins, blocks and line-weighted random moves, see Heuristics.chosePlayoutMove
+    THREAT_HEURISTIC
 }
@@ -38,7 +38,7 @@ public class StudentPlayer extends PentagoPlayer {
      */
     public Move chooseMove(PentagoBoardState boardState) {
         if (mcts == null) {
-            mcts = new MonteCarloUCT(3000, SimulationStrategy.CONNECTEDNESS_HEURISTIC);
+            mcts = new MonteCarloUCT(3000, SimulationStrategy.THREAT_HEURISTIC);
             mcts.loadTrainingFile();
         }
         if (heuristicOnly) return Heuristics.choseMove(boardState);
@@ -1,52 +1,57 @@
 package student_player.rave;
 
 import pentago_twist.PentagoBoardState;
-import pentago_twist.PentagoMove;
 
 import java.util.*;
 
 public class MyTools {
-    public static final long TIME_LIMIT = 1950;
-    public static final double b = 0.5;
-    public static final double EXPLORATION_PARAMETER = Math.sqrt(2);
+    // RAVE bias of the beta schedule, smaller values trust the AMAF statistics for longer
+    public static final double b = 0.1;
+    // RAVE already spreads the visits, so less exploration is needed than with plain UCT
+    public static final double EXPLORATION_PARAMETER = 0.25;
+    // Value of a child with neither visits nor AMAF statistics
+    public static final double FIRST_PLAY_URGENCY = 1.0;
+    // AMAF tables take 2.3 KB, so they are only given to nodes visited this often; most
+    // expanded nodes are never selected again
+    public static final int AMAF_MIN_VISITS = 4;
 
     private static final Random rand = new Random();
 
-    static Map<String, List<Node>> map = new HashMap<>();
-
 
     /* ======== MCTS Node ======== */
 
+    /**
+     * Nodes store the packed move code leading to them (see PentagoMove.encode) instead of a
+     * board; the board of a node is rebuilt by playing the moves from the root state.
+     *
+     * winCount counts the wins of the player who played move. A node with children also keeps
+     * the AMAF (all moves as first) statistics of the player to move there: for each move code,
+     * the playouts through this node in which that player played the move at any later point,
+     * and how many of them the player won. Nodes without the tables (see AMAF_MIN_VISITS) use
+     * plain UCT.
+     */
     public static class Node {
-        PentagoBoardState state;
-        PentagoMove move;
+        int move;
         Node parent;
         List<Node> childArray;
         int visitCount;
         int winCount;
+        int[] amafVisits;
+        int[] amafWins;
 
-        public Node(PentagoMove move, PentagoBoardState state, Node parent) {
-            this.state = state;
+        public Node(int move, Node parent) {
             this.move = move;
 
             this.parent = parent;
-            this.childArray = new ArrayList<>();
+            // Most nodes stay leaves, the list is only created on expansion
+            this.childArray = Collections.emptyList();
 
             this.visitCount = 0;
             this.winCount = 0;
-
-            addToMap();
         }
 
         public Node() {
-            this.state = null;
-            this.move = null;
-
-            this.parent = null;
-            this.childArray = new ArrayList<>();
-
-            this.visitCount = 0;
-            this.winCount = 0;
+            this(-1, null);
         }
 
         // ----- Getters ----- //
@@ -60,15 +65,13 @@ public class MyTools {
             return Collections.max(this.childArray, Comparator.comparing(c -> c.winCount));
         }
 
-        public void addToMap() {
-            if (map.get(state.toString()) == null) {
-                List<Node> l = new ArrayList<>();
-                l.add(this);
-                map.put(state.toString(), l);
-            } else {
-                List<Node> l = map.get(state.toString());
-                l.add(this);
-            }
+        public void allocateChildren(int numChildren) {
+            childArray = new ArrayList<>(numChildren);
+        }
+
+        public void allocateAmaf() {
+            amafVisits = new int[PentagoBoardState.MAX_MOVE_CODES];
+            amafWins = new int[PentagoBoardState.MAX_MOVE_CODES];
         }
 
     }
@@ -77,56 +80,51 @@ public class MyTools {
 
     public static class Tree {
         Node root;
+        PentagoBoardState rootState;
 
-        public Tree(){
+        public Tree(PentagoBoardState rootState){
             this.root = new Node();
+            this.rootState = rootState;
         }
     }
 
     /* ======== Upper Confidence Tree Functions ======== */
 
-    private static double uctValue(int totalVisit, double nodeWinScore, int nodeVisit) {
-        if (nodeVisit == 0) {
-            return Integer.MAX_VALUE;
+    /**
+     * Blend of the win rate of a child and the AMAF win rate of its move, with the beta schedule
+     * of Gelly and Silver: beta = n' / (n + n' + 4 b^2 n n'), n the visits of the child and n'
+     * the AMAF visits of the move. Beta starts at 1 and goes to 0 as the child gets visits of
+     * its own. The exploration term uses n + 1 so unvisited children are ordered by AMAF value.
+     */
+    static double value(int totalVisit, int nodeWinScore, int nodeVisit, int amafWins, int amafVisits) {
+        double exploration = EXPLORATION_PARAMETER * Math.sqrt(Math.log(totalVisit + 1) / (nodeVisit + 1));
+        if (nodeVisit == 0 && amafVisits == 0) {
+            return FIRST_PLAY_URGENCY + exploration;
         }
-        return ((double) nodeWinScore / (double) nodeVisit)
-                + EXPLORATION_PARAMETER * Math.sqrt(Math.log(totalVisit) / (double) nodeVisit);
-    }
-
-    private static double value(int totalVisit, double nodeWinScore, int nodeVisit, int wi, int ni) {
-        if (nodeVisit == 0) {
-            return Integer.MAX_VALUE;
-        }
-        if (ni == 0) {
-            return ((double) nodeWinScore / (double) nodeVisit)
-                    + EXPLORATION_PARAMETER * Math.sqrt(Math.log(totalVisit) / (double) nodeVisit);
-        }
-        double beta = ni / (nodeVisit + ni + 4 * b * ni * nodeVisit);
-        return (1 - beta) * ((double) nodeWinScore / (double) nodeVisit)
-                + beta * ((double) wi / (double) ni)
-                + EXPLORATION_PARAMETER * Math.sqrt(Math.log(totalVisit) / (double) nodeVisit);
+        double beta = amafVisits / (nodeVisit + amafVisits + 4 * b * b * nodeVisit * (double) amafVisits);
+        double winRate = nodeVisit == 0 ? 0 : (double) nodeWinScore / nodeVisit;
+        double amafRate = amafVisits == 0 ? 0 : (double) amafWins / amafVisits;
+        return (1 - beta) * winRate + beta * amafRate + exploration;
     }
 
     public static Node findBestNode(Node node) {
-        System.out.println("Map Size: " + map.size());
-        System.out.println("Map: " + map);
         int parentVisit = node.visitCount;
-        int ni = 0;
-        int wi = 0;
-        List<Node> nodes = map.get(node.state.toString());
-
-        for (int i = 0; i < nodes.size(); i++) {
-            ni += nodes.get(i).visitCount;
-            wi += nodes.get(i).winCount;
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < node.childArray.size(); i++) {
+            Node child = node.childArray.get(i);
+            double v = node.amafVisits == null
+                    ? value(parentVisit, child.winCount, child.visitCount, 0, 0)
+                    : value(parentVisit, child.winCount, child.visitCount,
+                            node.amafWins[child.move], node.amafVisits[child.move]);
+            if (v > bestValue) {
+                best = child;
+                bestValue = v;
+            }
         }
-
-        int finalWi = wi;
-        int finalNi = ni;
-        return Collections.max(
-                node.childArray,
-                Comparator.comparing(c -> value(parentVisit, c.winCount, c.visitCount, finalWi, finalNi)));
+        return best;
     }
 
 
 }
-
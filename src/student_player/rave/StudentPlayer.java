@@ -1,16 +1,16 @@
 package student_player.rave;
 
 import boardgame.Board;
+import boardgame.Deadline;
 import boardgame.Move;
+import boardgame.TimeManager;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
 import pentago_twist.PentagoPlayer;
+import student_player.MyTools.KeySet;
 import student_player.rave.MyTools.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Random;
 
 import static student_player.rave.MyTools.*;
 
@@ -20,6 +20,17 @@ public class StudentPlayer extends PentagoPlayer {
     static int curPlayer;
     static int opponent;
 
+    private static final Random rand = new Random();
+    // Moves played from the root in the current iteration, tree moves then playout moves
+    private static final int[] played = new int[PentagoBoardState.MAX_TURNS * 2 + 1];
+    private static int numPlayed;
+    // Scratch buffers, so that an iteration allocates nothing but the nodes it expands
+    private static final int[] legalMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+    private static final int[] childMoves = new int[PentagoBoardState.MAX_MOVE_CODES];
+    private static final KeySet childKeys = new KeySet();
+    private static final int[] amafStamp = new int[PentagoBoardState.MAX_MOVE_CODES];
+    private static int stamp;
+
     /**
      * You must modify this constructor to return your student number. This is
      * important, because this is what the code that runs the competition uses to
@@ -35,14 +46,14 @@ public class StudentPlayer extends PentagoPlayer {
      * make decisions.
      */
     public Move chooseMove(PentagoBoardState boardState) {
-        long start = System.currentTimeMillis();
+        // A new tree is grown every move and fills the heap within seconds, so the first move
+        // gets no more time than the others
+        TimeManager timeManager = getTimeManager();
+        long endTime = timeManager.getDeadline(boardState.getTurnNumber() == 0
+                ? (double) timeManager.getMoveTimeout() / timeManager.getFirstMoveTimeout() : 1);
 
         // Find move
-        Move myMove = chooseMoveMCTS(boardState);
-
-        long end = System.currentTimeMillis();
-
-        System.out.format("Move Time: &.2fms" + (end - start));
+        Move myMove = chooseMoveMCTS(boardState, endTime);
 
         // Return your move to be processed by the server.
         return myMove;
@@ -50,94 +61,130 @@ public class StudentPlayer extends PentagoPlayer {
 
     /* ======== Monte Carlo Search Tree Implementation ======== */
 
-    public static Move chooseMoveMCTS(PentagoBoardState boardState) {
+    public static Move chooseMoveMCTS(PentagoBoardState boardState, long endTime) {
         // define the time when search is terminated
-        long endTime = System.currentTimeMillis() + TIME_LIMIT;
+        Deadline deadline = Deadline.at(endTime);
 
         // set curPlayer and opponent
         curPlayer = boardState.getTurnPlayer();
         opponent = (curPlayer == PentagoBoardState.WHITE) ? PentagoBoardState.BLACK: PentagoBoardState.WHITE;
 
-        // create new MCTS tree
-        Tree tree = new Tree();
-        tree.root.state = boardState;
+        // create new MCTS tree, moves are played and taken back on its root state
+        Tree tree = new Tree((PentagoBoardState) boardState.clone());
+        PentagoBoardState state = tree.rootState;
 
-        while (System.currentTimeMillis() < endTime) {
-            /* SELECTION : get most promising Node using UCT policy */
-            Node promisingNode = selectPromisingNode(tree.root);
+        while (!deadline.expired()) {
+            numPlayed = 0;
+
+            /* SELECTION : get most promising Node using RAVE values */
+            Node promisingNode = selectPromisingNode(tree.root, state);
 
             /* EXPANSION : create the children of the selected node */
-            if (!promisingNode.state.gameOver()) {
-                expandNode(promisingNode);
+            if (!state.gameOver()) {
+                expandNode(promisingNode, state);
             }
 
             /* SIMULATION : select child and simulate to terminal node */
             Node nodeToExplore = promisingNode;
             if (!promisingNode.childArray.isEmpty()) {
                 nodeToExplore = promisingNode.getRandomChild();
+                play(state, nodeToExplore.move);
             }
-            int playoutResult = simulateRandomPlayout(nodeToExplore);
+            int playoutResult = simulateRandomPlayout(state);
 
-            /* BACK PROPAGATION : update the win and visit counts for nodes
-                                 on the path to the current node */
+            /* BACK PROPAGATION : update the win and visit counts, and the AMAF statistics,
+                                 of the nodes on the path to the current node */
             backPropogation(nodeToExplore, playoutResult);
+
+            while (state.getUndoDepth() > 0) {
+                state.undoMove();
+            }
         }
 
-        // Get child with max score and update the tree
+        // Get child with max score
         Node selectedNode = tree.root.getChildWithMaxScore();
-        tree.root = selectedNode;
-        return selectedNode.move;
+        return PentagoMove.fromMoveCode(selectedNode.move, curPlayer);
+    }
+
+    private static void play(PentagoBoardState state, int move) {
+        state.applyMove(move);
+        played[numPlayed++] = move;
     }
 
-    private static Node selectPromisingNode(Node rootNode) {
+    private static Node selectPromisingNode(Node rootNode, PentagoBoardState state) {
         Node node = rootNode;
         while (!node.childArray.isEmpty()) {
             node = findBestNode(node);
+            play(state, node.move);
         }
         return node;
     }
 
-    private static void expandNode(Node node) {
-        ArrayList<PentagoMove> legalMoves = node.state.getAllLegalMoves();
-
-        for (int i = 0; i < legalMoves.size(); i++) {
-            PentagoBoardState childState = (PentagoBoardState) node.state.clone();
-            childState.processMove(legalMoves.get(i));
+    private static void expandNode(Node node, PentagoBoardState state) {
+        int numMoves = state.getAllLegalMoveCodes(legalMoves);
+        // Many moves give the same board (e.g. twisting an empty quadrant), keep one child per board
+        childKeys.clear();
+        int numChildren = 0;
+        for (int i = 0; i < numMoves; i++) {
+            if (childKeys.add(state.getZobristKeyAfter(legalMoves[i]))) {
+                childMoves[numChildren++] = legalMoves[i];
+            }
+        }
 
-            Node child = new Node(legalMoves.get(i), childState, node);
-            node.childArray.add(child);
+        node.allocateChildren(numChildren);
+        for (int i = 0; i < numChildren; i++) {
+            node.childArray.add(new Node(childMoves[i], node));
         }
     }
 
+    /**
+     * The node at depth d is reached after played[0..d-1]; the player to move there plays
+     * played[d], played[d + 2], ... so those are the moves its AMAF statistics are updated for.
+     * A code is counted once per playout, at its first occurrence (a twist can empty a cell
+     * that was played before).
+     */
     private static void backPropogation(Node leafNode, int winner) {
         Node tmp = leafNode;
+        int depth = 0;
+        for (Node n = leafNode; n.parent != null; n = n.parent) {
+            depth++;
+        }
 
         while (tmp != null) {
+            // The player to move at tmp, and the one who moved into it
+            int turn = (depth % 2 == 0) ? curPlayer : opponent;
             tmp.visitCount++;
-            if (winner == curPlayer) {
+            if (winner != turn && winner != Board.DRAW) {
                 tmp.winCount++;
             }
+            if (tmp.amafVisits == null && tmp.visitCount >= AMAF_MIN_VISITS && !tmp.childArray.isEmpty()) {
+                tmp.allocateAmaf();
+            }
+            if (tmp.amafVisits != null) {
+                stamp++;
+                boolean won = winner == turn;
+                for (int i = depth; i < numPlayed; i += 2) {
+                    int move = played[i];
+                    if (amafStamp[move] == stamp) continue;
+                    amafStamp[move] = stamp;
+                    tmp.amafVisits[move]++;
+                    if (won) {
+                        tmp.amafWins[move]++;
+                    }
+                }
+            }
             tmp = tmp.parent;
+            depth--;
         }
     }
 
-    private static int simulateRandomPlayout(Node node) {
-        PentagoBoardState tmpState = (PentagoBoardState) node.state.clone();
-        PentagoMove tmpMove;
-
-        // todo remove?
-        // check if game is over and opponent won
-        if (opponent == tmpState.getWinner()) {
-            node.parent.winCount = Integer.MIN_VALUE;
-            return opponent;
-        }
+    private static int simulateRandomPlayout(PentagoBoardState state) {
         // if game is not over simulate to the end by selecting random moves
-        while (tmpState.getWinner() == Board.NOBODY) {
-            tmpMove = (PentagoMove) tmpState.getRandomMove();
-            tmpState.processMove(tmpMove);
+        while (state.getWinner() == Board.NOBODY) {
+            play(state, state.randomLegalMoveCode(rand));
         }
-        return tmpState.getWinner();
+        return state.getWinner();
     }
 
 
-}
\ No newline at end of file
+}
@@ -4,17 +4,23 @@ import boardgame.Move;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
 import pentago_twist.PentagoPlayer;
-import student_player.rodolphe.abprune.ABPrune;
+import student_player.LazySmpSearch;
+import student_player.rodolphe.abprune.boardHeuristics;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Random;
 
+import static student_player.MyTools.AB_TABLE_CAPACITY;
+import static student_player.MyTools.NUM_THREADS;
+
 public class AlphaBetaPlayer extends PentagoPlayer {
     private static final String PLAYER ="alpha-beta";
     private ArrayList<PentagoMove> centers = new ArrayList<>();
     private Random rnd = new Random();
     private boolean firstTurn = true;
+    private final LazySmpSearch search = new LazySmpSearch(AB_TABLE_CAPACITY, NUM_THREADS,
+            state -> boardHeuristics.streakcount(state, state.getTurnPlayer()));
 
     public AlphaBetaPlayer() {
         super(PLAYER);
@@ -22,6 +28,7 @@ public class AlphaBetaPlayer extends PentagoPlayer {
 
     public Move chooseMove(PentagoBoardState boardState) {
         long start = System.currentTimeMillis();
+        long endTime = getTimeManager().getDeadline(1);
 
         // first turn
         if (firstTurn) {
@@ -45,23 +52,16 @@ public class AlphaBetaPlayer extends PentagoPlayer {
         }
 
         if (centers.size() <= 1 && (myMove.getValue() == null ||!boardState.isPlaceLegal(myMove.getValue().getMoveCoord())) ) {
-            long abstart = System.currentTimeMillis();
-            //myMove = ABPrune.minimax(2, boardState.getTurnPlayer(), boardState).getValue();
-            myMove = ABPrune.abp(3, boardState.getTurnPlayer(), boardState, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            long abend = System.currentTimeMillis();
-
-            if (((double)(abend-abstart)/1000) < 1.0) {
-                AbstractMap.SimpleEntry<Integer, PentagoMove> opMove = ABPrune.abp(3, boardState.getTurnPlayer() ^ 1, boardState, Integer.MIN_VALUE, Integer.MAX_VALUE);
-                if (opMove.getKey() > myMove.getKey()) {
-                    myMove = opMove;
-                }
-            }
+            // Deepens until the deadline instead of a fixed depth 3
+            int move = search.search(boardState, endTime);
+            myMove = new AbstractMap.SimpleEntry<>(search.getScore(),
+                    PentagoMove.fromMoveCode(move, boardState.getTurnPlayer()));
         }
 
 
         long end = System.currentTimeMillis();
 
-        System.out.println("abp move took " + (double)(end-start)/1000 + "s");
+        System.out.println("abp move took " + (double)(end-start)/1000 + "s, depth " + search.getCompletedDepth());
 
         return myMove.getValue();
     }
@@ -20,22 +20,22 @@ public class ABPrune {
         }
         else {
             for (PentagoMove currentmove: nextmoves){
-                PentagoBoardState boardwMove = (PentagoBoardState)pbs.clone();
-                boardwMove.processMove(currentmove);
+                pbs.applyMove(currentmove);
                 if (player == PentagoBoardState.WHITE) {
-                    currentScore = minimax(depth -1, PentagoBoardState.BLACK, boardwMove).getKey();
+                    currentScore = minimax(depth -1, PentagoBoardState.BLACK, pbs).getKey();
                     if(currentScore > bestScore) {
                         bestScore = currentScore;
                         bestMove = currentmove;
                     }
                 }
                 else {
-                    currentScore = minimax(depth -1, PentagoBoardState.WHITE, boardwMove).getKey();
+                    currentScore = minimax(depth -1, PentagoBoardState.WHITE, pbs).getKey();
                     if (currentScore < bestScore) {
                         bestScore = currentScore;
                         bestMove = currentmove;
                     }
                 }
+                pbs.undoMove();
             }
         }
         return new AbstractMap.SimpleEntry<>(bestScore, bestMove);
@@ -53,22 +53,22 @@ public class ABPrune {
         }
         else {
             for (PentagoMove currentmove: nextmoves){
-                PentagoBoardState boardwMove = (PentagoBoardState)pbs.clone();
-                boardwMove.processMove(currentmove);
+                pbs.applyMove(currentmove);
                 if (player == PentagoBoardState.WHITE) {
-                    bestScore = abp(depth -1, PentagoBoardState.BLACK, boardwMove, alpha, beta).getKey();
+                    bestScore = abp(depth -1, PentagoBoardState.BLACK, pbs, alpha, beta).getKey();
                     if(bestScore > alpha) {
                         alpha = bestScore;
                         bestMove = currentmove;
                     }
                 }
                 else {
-                    bestScore = abp(depth -1, PentagoBoardState.WHITE, boardwMove, alpha, beta).getKey();
+                    bestScore = abp(depth -1, PentagoBoardState.WHITE, pbs, alpha, beta).getKey();
                     if (bestScore < beta) {
                         beta = bestScore;
                         bestMove = currentmove;
                     }
                 }
+                pbs.undoMove();
                 if (alpha >= beta) {
                     break;
                 }
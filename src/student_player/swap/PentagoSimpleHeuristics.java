@@ -11,11 +11,12 @@ public class PentagoSimpleHeuristics {
     public PentagoMove getNextMove(PentagoBoardState pentagoBoardState) {
         ArrayList<PentagoMove> legalMoves = pentagoBoardState.getAllLegalMoves();
 
+        int player = pentagoBoardState.getTurnPlayer();
         for(PentagoMove move : legalMoves) {
-            PentagoBoardState boardStateClone = (PentagoBoardState) pentagoBoardState.clone();
-
-            boardStateClone.processMove(move);
-            if (boardStateClone.getWinner() == pentagoBoardState.getTurnPlayer()) {
+            pentagoBoardState.applyMove(move);
+            boolean isWin = pentagoBoardState.getWinner() == player;
+            pentagoBoardState.undoMove();
+            if (isWin) {
                 return move;
             }
         }
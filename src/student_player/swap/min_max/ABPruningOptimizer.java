@@ -3,78 +3,36 @@ package student_player.swap.min_max;
 import boardgame.Board;
 import pentago_twist.PentagoBoardState;
 import pentago_twist.PentagoMove;
+import student_player.LazySmpSearch;
 
-import java.util.AbstractMap;
-import java.util.ArrayList;
+import static student_player.MyTools.AB_TABLE_CAPACITY;
+import static student_player.MyTools.NUM_THREADS;
 
 class ABPruningOptimizer {
 
-    private int initialAlpha;
-    private int initialBeta;
     private PentagoHeuristicService heuristics;
-    final private long maxSearchTime = System.currentTimeMillis() + 1950;
+    private LazySmpSearch search;
 
     ABPruningOptimizer() {
-
-        new ABPruningOptimizer(Integer.MIN_VALUE, Integer.MAX_VALUE);
-        this.heuristics = new PentagoHeuristicService();
-    }
-
-    ABPruningOptimizer(int initialAlpha, int initialBeta) {
         super();
-        this.initialAlpha = initialAlpha;
-        this.initialBeta = initialBeta;
         this.heuristics = new PentagoHeuristicService();
+        // The evaluation is computeHeuristic from the point of view of the side to move, which
+        // AlphaBetaSearch clamps to +-MAX_EVAL. The 0, 0 are only the score computeHeuristic
+        // starts counting from, not a search window
+        this.search = new LazySmpSearch(AB_TABLE_CAPACITY, NUM_THREADS,
+                state -> heuristics.computeHeuristic(state, state.getTurnPlayer(), 0, 0));
     }
 
-    PentagoMove getNextBestMove(int depth, PentagoBoardState pentagoBoardState, int currentPlayer) {
-        return prune(depth, pentagoBoardState, currentPlayer, this.initialAlpha, this.initialBeta).getValue();
+    /**
+     * Iterative deepening search until endTime.
+     * @param endTime a System.currentTimeMillis() time, see TimeManager.getDeadline
+     */
+    PentagoMove getNextBestMove(PentagoBoardState pentagoBoardState, long endTime) {
+        int move = search.search(pentagoBoardState, endTime);
+        return PentagoMove.fromMoveCode(move, pentagoBoardState.getTurnPlayer());
     }
 
-    @SuppressWarnings("unchecked")
-    private AbstractMap.SimpleImmutableEntry<Integer, PentagoMove> prune(int depth, PentagoBoardState pentagoBoardState,
-                                                                         int currentPlayer, int alpha, int beta) {
-
-        ArrayList<PentagoMove> legalMoves = pentagoBoardState.getAllLegalMoves();
-        PentagoMove bestMove = legalMoves.get(0);
-        int bestScore;
-
-        if (depth == 0 || legalMoves.isEmpty()) {
-            bestScore = this.heuristics.computeHeuristic(pentagoBoardState, currentPlayer, alpha, beta);
-            return new AbstractMap.SimpleImmutableEntry(bestScore, bestMove);
-        }
-
-        for (PentagoMove currentMove : legalMoves) {
-
-            PentagoBoardState boardState = (PentagoBoardState) pentagoBoardState.clone();
-            boardState.processMove(currentMove);
-
-            if (currentPlayer == PentagoBoardState.WHITE) {
-                bestScore = prune(depth - 1, boardState, PentagoBoardState.BLACK, alpha, beta).getKey();
-
-                // The WHITE player is the MAX player
-                if (bestScore > alpha) {
-                    alpha = bestScore;
-                    bestMove = currentMove;
-                }
-            }
-            else {
-                bestScore = prune(depth - 1, boardState, PentagoBoardState.WHITE, alpha, beta).getKey();
-
-                // The BLACK player is the MIN player
-                if (bestScore < beta) {
-                    beta = bestScore;
-                    bestMove = currentMove;
-                }
-            }
-
-            if (System.currentTimeMillis() >= this.maxSearchTime || alpha >= beta) {
-                return new AbstractMap.SimpleImmutableEntry<>(bestScore, bestMove);
-            }
-        }
-
-        return new AbstractMap.SimpleImmutableEntry<>((currentPlayer == PentagoBoardState.WHITE) ? alpha : beta, bestMove);
-    }
+    int getCompletedDepth() { return search.getCompletedDepth(); }
 
 
     private class PentagoHeuristicService {
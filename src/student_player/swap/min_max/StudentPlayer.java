@@ -8,6 +8,9 @@ import student_player.swap.PentagoSimpleHeuristics;;
 /** A player file submitted by a student. */
 public class StudentPlayer extends PentagoPlayer {
 
+    // Kept across moves, so that its transposition table is too
+    private final ABPruningOptimizer optimizer = new ABPruningOptimizer();
+
     /**
      * You must modify this constructor to return your student number. This is
      * important, because this is what the code that runs the competition uses to
@@ -25,6 +28,8 @@ public class StudentPlayer extends PentagoPlayer {
     public Move chooseMove(PentagoBoardState pentagoBoardState) {
 
         final boolean DEBUG = false;
+        // Taken on every move, also when no search follows, so the first move timeout is used once
+        long endTime = getTimeManager().getDeadline(1);
         PentagoSimpleHeuristics simpleHeuristics = new PentagoSimpleHeuristics();
         Move winningMove = simpleHeuristics.getNextMove(pentagoBoardState);
 
@@ -38,15 +43,13 @@ public class StudentPlayer extends PentagoPlayer {
             return winningMove;
         }
 
-        final int DEPTH = 8;
-        ABPruningOptimizer optimizer = new ABPruningOptimizer();
-        Move myMove = optimizer.getNextBestMove(DEPTH, pentagoBoardState, pentagoBoardState.getTurnPlayer());
+        Move myMove = optimizer.getNextBestMove(pentagoBoardState, endTime);
         float timeElapsed = (System.currentTimeMillis() - start) / 1000f;
 
         if (DEBUG) {
             System.out.println(myMove.toPrettyString());
             pentagoBoardState.printBoard();
-            System.out.println(String.format("Time for Move (s): %f", timeElapsed));
+            System.out.println(String.format("Time for Move (s): %f, depth %d", timeElapsed, optimizer.getCompletedDepth()));
         }
 
         return myMove;
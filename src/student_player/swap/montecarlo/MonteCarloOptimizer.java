@@ -1,6 +1,7 @@
 package student_player.swap.montecarlo;
 
 import boardgame.Board;
+import boardgame.Deadline;
 import boardgame.Move;
 import pentago_twist.PentagoBoardState;
 
@@ -10,18 +11,20 @@ import static student_player.swap.montecarlo.MonteCarloUCT.findBestNodeWithUCT;
 
 public class MonteCarloOptimizer {
     private static final int WIN_SCORE = 100;
-    private static final int MAX_SEARCH_TIME_MS = 1950;
     private int opponent;
 
     public MonteCarloOptimizer() {super();}
 
-    public Move findNextMove(PentagoBoardState pentagoBoardState) {
-        long endTime = System.currentTimeMillis() + MAX_SEARCH_TIME_MS;
+    /**
+     * @param endTime a System.currentTimeMillis() time, see TimeManager.getDeadline
+     */
+    public Move findNextMove(PentagoBoardState pentagoBoardState, long endTime) {
+        Deadline deadline = Deadline.at(endTime);
 
         MonteCarloNode rootNode = new MonteCarloNode(pentagoBoardState, null);
         this.opponent = (pentagoBoardState.getTurnPlayer() == 0) ? PentagoBoardState.BLACK: PentagoBoardState.WHITE;
 
-        while (System.currentTimeMillis() < endTime) {
+        while (!deadline.expired()) {
             // Phase 1 - Selection
             MonteCarloNode promisingNode = selectPromisingNode(rootNode);
 
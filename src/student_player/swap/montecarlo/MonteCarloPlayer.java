@@ -28,6 +28,8 @@ public class MonteCarloPlayer extends PentagoPlayer {
 
         final boolean DEBUG = false;
         long start = System.currentTimeMillis();
+        // Taken on every move, also when no search follows, so the first move timeout is used once
+        long endTime = getTimeManager().getDeadline(1);
         PentagoSimpleHeuristics simpleHeuristics = new PentagoSimpleHeuristics();
         PentagoMove winningMove = simpleHeuristics.getNextMove(pentagoBoardState);
 //        System.out.println(String.format("Time for 1 Move check (s): %f", (System.currentTimeMillis() - start) / 1000f));
@@ -41,7 +43,7 @@ public class MonteCarloPlayer extends PentagoPlayer {
         }
 
         MonteCarloOptimizer mctsOptimizer = new MonteCarloOptimizer();
-        Move myMove = mctsOptimizer.findNextMove(pentagoBoardState);
+        Move myMove = mctsOptimizer.findNextMove(pentagoBoardState, endTime);
 
         //noinspection ConstantConditions
         if (DEBUG) {
@@ -7,10 +7,17 @@ import pentago_twist.PentagoMove;
 import java.util.*;
 
 public class MyTools {
-    public static final long FIRST_MOVE_TIME_LIMIT = 10000;
-    public static final long MOVE_TIME_LIMIT = 1950;
+    // Share of the first move timeout used, see TimeManager.getDeadline
+    public static final double FIRST_MOVE_TIME_SHARE = 1 / 3.0;
     public static final int WIN_SCORE = 10;
     public static final double EXPLORATION_PARAMETER = Math.sqrt(2);
+    // Max nodes alive in the tree (about 170 bytes each with their state). Past it, the
+    // least visited subtrees are cut, see Tree.evict
+    public static final int NODE_BUDGET = 1_000_000;
+    // Room kept free by an eviction, so that it does not run again right away
+    public static final int EVICTION_TARGET = NODE_BUDGET / 4 * 3;
+    // Iterations between two checks of whether the move is settled, see StudentPlayer.isSettled
+    public static final int SETTLED_CHECK_INTERVAL = 256;
 
     private static final Random rand = new Random();
 
@@ -47,6 +54,17 @@ public class MyTools {
             this.winScore = 0;
         }
 
+        // Makes a recycled node look new, keeping its state object and child list capacity
+        void reset(PentagoMove move, Node parent) {
+            this.move = move;
+
+            this.parent = parent;
+            this.childArray.clear();
+
+            this.visitCount = 0;
+            this.winScore = 0;
+        }
+
         // ----- Setters ----- //
 
         public void incrementVisit(){
@@ -93,19 +111,106 @@ public class MyTools {
 
     /* ======== MCTS Tree ======== */
 
+    /**
+     * Tree that holds at most NODE_BUDGET nodes. Nodes cut from the tree, either when the root
+     * moves on or when the budget is reached, go to a free list and are handed out again by
+     * newChild along with their board state, so the heap stays flat over a game and the
+     * garbage collector has little to do during a move.
+     */
     public static class Tree {
         Node root;
+        int size; // Nodes reachable from root
+        private final ArrayDeque<Node> freeList = new ArrayDeque<>();
 
         public Tree(){
             this.root = new Node();
+            this.size = 1;
+        }
+
+        /**
+         * Creates the child of a node reached by the given move, reusing a freed node if any.
+         */
+        public Node newChild(Node parent, PentagoMove move) {
+            Node child = freeList.poll();
+            if (child == null) {
+                child = new Node(move, (PentagoBoardState) parent.state.clone(), parent);
+            } else {
+                child.reset(move, parent);
+                if (child.state == null) {
+                    child.state = (PentagoBoardState) parent.state.clone();
+                } else {
+                    child.state.copyFrom(parent.state);
+                }
+            }
+            child.state.processMove(move);
+            size++;
+            return child;
+        }
+
+        /** @return true if expanding a node may go over NODE_BUDGET */
+        public boolean isFull() {
+            return size + PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE * 8 > NODE_BUDGET;
         }
 
+        /**
+         * Cuts the least visited subtrees until the tree is down to EVICTION_TARGET nodes. Each
+         * pass turns every node visited at most threshold times back into a leaf, keeping its
+         * own statistics, then the threshold doubles. Must not run while nodes are in use by
+         * an iteration.
+         */
+        public void evict() {
+            for (int threshold = 1; size > EVICTION_TARGET && threshold < root.visitCount; threshold *= 2) {
+                collapse(root, threshold);
+            }
+        }
+
+        private void collapse(Node node, int threshold) {
+            for (int i = 0; i < node.childArray.size(); i++) {
+                Node child = node.childArray.get(i);
+                if (child.visitCount <= threshold) {
+                    releaseChildren(child);
+                } else {
+                    collapse(child, threshold);
+                }
+            }
+        }
+
+        /** Moves all descendants of a node to the free list and makes it a leaf. */
+        private void releaseChildren(Node node) {
+            for (int i = 0; i < node.childArray.size(); i++) {
+                release(node.childArray.get(i));
+            }
+            node.childArray.clear();
+        }
+
+        private void release(Node node) {
+            releaseChildren(node);
+            node.parent = null;
+            freeList.push(node);
+            size--;
+        }
+
+        /**
+         * Re-roots the tree at the child of the root with the given state, or starts over from
+         * an empty root if there is none.
+         */
         public void pruneTree(PentagoBoardState state) {
-            this.root = root.getChildWithState(state);
-            this.root.parent = null;
+            Node child = root.getChildWithState(state);
+            if (child == null) {
+                releaseChildren(root);
+                root.visitCount = 0;
+                root.winScore = 0;
+                return;
+            }
+            pruneTree(child);
         }
 
+        /**
+         * Re-roots the tree at a child of the root, freeing the rest.
+         */
         public void pruneTree(Node node) {
+            root.childArray.remove(node);
+            release(root);
             this.root = node;
             this.root.parent = null;
         }
@@ -1,7 +1,9 @@
 package student_player.tree_reuse;
 
 import boardgame.Board;
+import boardgame.Deadline;
 import boardgame.Move;
+import boardgame.TimeManager;
 
 import pentago_twist.PentagoMove;
 import pentago_twist.PentagoPlayer;
@@ -38,19 +40,14 @@ public class StudentPlayer extends PentagoPlayer {
      */
     public Move chooseMove(PentagoBoardState boardState) {
         // define the time when search is terminated
-        long endTime;
+        long endTime = getTimeManager().getDeadline(isFirstMove ? FIRST_MOVE_TIME_SHARE : 1);
 
         if (isFirstMove) {
-            endTime = System.currentTimeMillis() + FIRST_MOVE_TIME_LIMIT;
             // Do first move shit
             tree = new Tree();
             isFirstMove = false;
         } else {
-            endTime = System.currentTimeMillis() + MOVE_TIME_LIMIT;
             tree.pruneTree(boardState);
-            if (tree.root == null) {
-                tree = new Tree();
-            }
         }
 
         // Find move
@@ -68,9 +65,18 @@ public class StudentPlayer extends PentagoPlayer {
         opponent = (curPlayer == PentagoBoardState.WHITE) ? PentagoBoardState.BLACK: PentagoBoardState.WHITE;
 
         // Tree tree = new Tree();
-        tree.root.state = boardState;
+        // Copied, since the state object of the root is recycled once the root is cut off
+        tree.root.state = (PentagoBoardState) boardState.clone();
+        long startTime = System.currentTimeMillis();
+        long iterations = 0;
+        Deadline deadline = Deadline.at(endTime);
+
+        while (!deadline.expired()) {
+            /* Keep the tree within NODE_BUDGET, between iterations so no node is in use */
+            if (tree.isFull()) {
+                tree.evict();
+            }
 
-        while (System.currentTimeMillis() < endTime) {
             /* SELECTION : get most promising Node using UCT policy */
             Node promisingNode = selectPromisingNode(tree.root);
 
@@ -89,6 +95,11 @@ public class StudentPlayer extends PentagoPlayer {
             /* BACK PROPAGATION : update the win and visit counts for nodes
                                  on the path to the current node */
             backPropogation(nodeToExplore, playoutResult);
+
+            // Stop early once more iterations are unlikely to change the move
+            if (++iterations % SETTLED_CHECK_INTERVAL == 0 && isSettled(tree.root, iterations, startTime, endTime)) {
+                break;
+            }
         }
 
         // Get child with max score and update the tree
@@ -98,6 +109,31 @@ public class StudentPlayer extends PentagoPlayer {
         return selectedNode.move;
     }
 
+    /**
+     * Whether the child with the best score is too far ahead to be caught before endTime
+     * (each iteration adds at most WIN_SCORE to one child), or has a win rate confidently
+     * above that of every other child.
+     */
+    private static boolean isSettled(Node rootNode, long iterations, long startTime, long endTime) {
+        if (rootNode.childArray.size() < 2) return !rootNode.childArray.isEmpty();
+        Node best = rootNode.getChildWithMaxScore();
+        double second = Double.NEGATIVE_INFINITY;
+        for (Node child : rootNode.childArray) {
+            if (child != best) second = Math.max(second, child.winScore);
+        }
+        long now = System.currentTimeMillis();
+        if (TimeManager.cannotBeOvertaken(best.winScore, second, WIN_SCORE, iterations, now - startTime, endTime - now)) {
+            return true;
+        }
+        for (Node child : rootNode.childArray) {
+            if (child != best && !TimeManager.clearlyBetter(best.winScore / WIN_SCORE, best.visitCount,
+                    child.winScore / WIN_SCORE, child.visitCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static Node selectPromisingNode(Node rootNode) {
         Node node = rootNode;
         while (!node.childArray.isEmpty()) {
@@ -110,10 +146,7 @@ public class StudentPlayer extends PentagoPlayer {
         List<PentagoMove> legalMoves = node.state.getAllLegalMoves();
 
         for (int i = 0; i < legalMoves.size(); i++) {
-            PentagoBoardState childState = (PentagoBoardState) node.state.clone();
-            childState.processMove(legalMoves.get(i));
-
-            Node child = new Node(legalMoves.get(i), childState, node);
+            Node child = tree.newChild(node, legalMoves.get(i));
             node.childArray.add(child);
         }
     }
@@ -148,4 +181,4 @@ public class StudentPlayer extends PentagoPlayer {
     }
 
 
-}
\ No newline at end of file
+}
\ No newline at end of file